@@ -0,0 +1,3 @@
+package me.gregorsomething.benchmark;
+
+public record BenchEvent(int userId, String payload) {}
@@ -0,0 +1,6 @@
+package me.gregorsomething.benchmark;
+
+/**
+ * Mapped with nested user, from columns with user_ prefix
+ */
+public record BenchOrder(int id, long amount, BenchUser user) {}
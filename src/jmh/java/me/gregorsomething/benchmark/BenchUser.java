@@ -0,0 +1,3 @@
+package me.gregorsomething.benchmark;
+
+public record BenchUser(int id, String name, String email, int score) {}
@@ -0,0 +1,50 @@
+package me.gregorsomething.benchmark;
+
+import me.gregorsomething.database.ConnectionPool;
+import me.gregorsomething.database.Database;
+import me.gregorsomething.database.PooledDatabase;
+import me.gregorsomething.database.RepositoryProvider;
+import org.h2.jdbcx.JdbcDataSource;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * In-memory H2 database filled with users and orders, shared by all benchmark threads
+ */
+@State(Scope.Benchmark)
+public class BenchmarkDatabase {
+    public static final int USERS = 10_000;
+    public static final int ORDERS = 10_000;
+
+    Database database;
+    BenchmarkRepository repository;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        // Kept open until last connection is closed, every trial gets new database
+        dataSource.setURL("jdbc:h2:mem:bench" + System.nanoTime() + ";DB_CLOSE_DELAY=0");
+        this.database = new PooledDatabase(new ConnectionPool(dataSource, 4));
+        this.repository = RepositoryProvider.create(BenchmarkRepository.class, this.database);
+
+        List<BenchUser> users = new ArrayList<>(USERS);
+        for (int i = 1; i <= USERS; i++)
+            users.add(new BenchUser(i, "user" + i, "user" + i + "@example.com", i % 100));
+        this.repository.addUsers(users);
+        this.repository.inTransaction(r -> {
+            for (int i = 1; i <= ORDERS; i++)
+                r.addOrder(i, (i * 7) % USERS + 1, i * 100L);
+        });
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.database.close();
+    }
+}
@@ -0,0 +1,46 @@
+package me.gregorsomething.benchmark;
+
+import me.gregorsomething.database.Transactional;
+import me.gregorsomething.database.annotations.Query;
+import me.gregorsomething.database.annotations.Repository;
+import me.gregorsomething.database.annotations.Statement;
+
+import java.util.List;
+
+@Repository({
+        "CREATE TABLE IF NOT EXISTS bench_users (id INT PRIMARY KEY, name VARCHAR(64) NOT NULL, email VARCHAR(128), score INT NOT NULL);",
+        "CREATE TABLE IF NOT EXISTS bench_orders (id INT PRIMARY KEY, user_id INT NOT NULL, amount BIGINT NOT NULL);",
+        "CREATE TABLE IF NOT EXISTS bench_events (id INT AUTO_INCREMENT PRIMARY KEY, user_id INT NOT NULL, payload VARCHAR(256));"
+})
+public interface BenchmarkRepository extends Transactional<BenchmarkRepository> {
+
+    @Statement(value = "INSERT INTO bench_users VALUES ([( users.id )], [( users.name )], [( users.email )], [( users.score )]);",
+            batchSize = 1000)
+    void addUsers(List<BenchUser> users);
+
+    @Statement("INSERT INTO bench_orders VALUES ([( id )], [( userId )], [( amount )]);")
+    void addOrder(int id, int userId, long amount);
+
+    @Statement(value = "INSERT INTO bench_events (user_id, payload) VALUES ([( events.userId )], [( events.payload )]);",
+            batchSize = 500)
+    void addEvents(List<BenchEvent> events);
+
+    @Statement("DELETE FROM bench_events;")
+    void deleteEvents();
+
+    @Statement("UPDATE bench_users SET score = score + [( delta )] WHERE id = [( id )];")
+    void addScore(int id, int delta);
+
+    @Query("SELECT id, name, email, score FROM bench_users WHERE id = [( id )];")
+    BenchUser byId(int id);
+
+    @Query("SELECT id, name, email, score FROM bench_users ORDER BY id LIMIT [( limit )];")
+    List<BenchUser> firstUsers(int limit);
+
+    @Query("""
+            SELECT o.id, o.amount, u.id AS user_id, u.name AS user_name, u.email AS user_email, u.score AS user_score
+            FROM bench_orders o JOIN bench_users u ON u.id = o.user_id
+            ORDER BY o.id LIMIT [( limit )];
+            """)
+    List<BenchOrder> firstOrders(int limit);
+}
@@ -0,0 +1,103 @@
+package me.gregorsomething.benchmark;
+
+import me.gregorsomething.database.SqlStatement;
+import me.gregorsomething.database.StatementBinder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares mapper generated by processor with reflection based mapper and hand-written JDBC.
+ * All three run same SQL through same database and statement cache, on same rows,
+ * so difference between them is cost of mapping. Results go to report with {@code ./gradlew jmhMappingReport}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MappingBenchmark {
+    // Same SQL as BenchmarkRepository uses, with ? instead of placeholders
+    private static final SqlStatement[] STATEMENTS = SqlStatement.register(
+            "SELECT id, name, email, score FROM bench_users ORDER BY id LIMIT ?;",
+            """
+            SELECT o.id, o.amount, u.id AS user_id, u.name AS user_name, u.email AS user_email, u.score AS user_score
+            FROM bench_orders o JOIN bench_users u ON u.id = o.user_id
+            ORDER BY o.id LIMIT ?;
+            """);
+    private static final ReflectiveRecordMapper<BenchUser> USER_MAPPER = ReflectiveRecordMapper.of(BenchUser.class);
+    private static final ReflectiveRecordMapper<BenchOrder> ORDER_MAPPER = ReflectiveRecordMapper.of(BenchOrder.class);
+
+    @Param({"1", "100", "10000"})
+    int rows;
+
+    @Benchmark
+    public List<BenchUser> usersGenerated(BenchmarkDatabase db) {
+        return db.repository.firstUsers(this.rows);
+    }
+
+    @Benchmark
+    public List<BenchUser> usersReflective(BenchmarkDatabase db) throws SQLException {
+        return db.database.query(STATEMENTS[0], this.limit(), rs -> {
+            List<BenchUser> users = new ArrayList<>();
+            while (rs.next())
+                users.add(USER_MAPPER.fromRow(rs));
+            return users;
+        });
+    }
+
+    @Benchmark
+    public List<BenchUser> usersHandWritten(BenchmarkDatabase db) throws SQLException {
+        return db.database.query(STATEMENTS[0], this.limit(), rs -> {
+            List<BenchUser> users = new ArrayList<>();
+            while (rs.next())
+                users.add(new BenchUser(rs.getInt(1), rs.getString(2), rs.getString(3), rs.getInt(4)));
+            return users;
+        });
+    }
+
+    @Benchmark
+    public List<BenchOrder> ordersGenerated(BenchmarkDatabase db) {
+        return db.repository.firstOrders(this.rows);
+    }
+
+    @Benchmark
+    public List<BenchOrder> ordersReflective(BenchmarkDatabase db) throws SQLException {
+        return db.database.query(STATEMENTS[1], this.limit(), rs -> {
+            List<BenchOrder> orders = new ArrayList<>();
+            while (rs.next())
+                orders.add(ORDER_MAPPER.fromRow(rs));
+            return orders;
+        });
+    }
+
+    @Benchmark
+    public List<BenchOrder> ordersHandWritten(BenchmarkDatabase db) throws SQLException {
+        return db.database.query(STATEMENTS[1], this.limit(), rs -> {
+            List<BenchOrder> orders = new ArrayList<>();
+            while (rs.next()) {
+                orders.add(new BenchOrder(rs.getInt(1), rs.getLong(2),
+                        new BenchUser(rs.getInt(3), rs.getString(4), rs.getString(5), rs.getInt(6))));
+            }
+            return orders;
+        });
+    }
+
+    private StatementBinder limit() {
+        int rows = this.rows;
+        return statement -> statement.setInt(1, rows);
+    }
+}
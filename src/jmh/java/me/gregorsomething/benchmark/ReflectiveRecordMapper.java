@@ -0,0 +1,109 @@
+package me.gregorsomething.benchmark;
+
+import me.gregorsomething.database.ResultSetMapper;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.RecordComponent;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+/**
+ * Maps rows to records at runtime, like reflection based mappers do, to compare generated mappers with.
+ * Canonical constructor is called through {@link MethodHandle}, columns are read in order of record components
+ * and nested records take next columns, so it reads same columns as generated mapper.
+ * Lookup of constructor and readers is done once per class, only mapping is measured.
+ */
+final class ReflectiveRecordMapper<T> implements ResultSetMapper<T> {
+    private final MethodHandle constructor;
+    private final Reader[] readers;
+    private final int columnCount;
+
+    private ReflectiveRecordMapper(Class<T> type) {
+        RecordComponent[] components = type.getRecordComponents();
+        if (components == null)
+            throw new IllegalArgumentException(type + " is not record");
+        Class<?>[] parameterTypes = Arrays.stream(components).map(RecordComponent::getType).toArray(Class<?>[]::new);
+        try {
+            this.constructor = MethodHandles.publicLookup()
+                    .findConstructor(type, MethodType.methodType(void.class, parameterTypes))
+                    // Takes arguments as array, so row is mapped with one invoke call
+                    .asSpreader(Object[].class, parameterTypes.length);
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new IllegalArgumentException("Record has no public canonical constructor: " + type, e);
+        }
+        this.readers = new Reader[components.length];
+        int columns = 0;
+        for (int i = 0; i < components.length; i++) {
+            Reader reader = readerFor(components[i].getType());
+            this.readers[i] = reader;
+            columns += reader.columnCount();
+        }
+        this.columnCount = columns;
+    }
+
+    static <T> ReflectiveRecordMapper<T> of(Class<T> type) {
+        return new ReflectiveRecordMapper<>(type);
+    }
+
+    @Override
+    public T fromRow(ResultSet rs) throws SQLException {
+        return this.read(rs, 1);
+    }
+
+    @SuppressWarnings("unchecked")
+    private T read(ResultSet rs, int startColumn) throws SQLException {
+        Object[] arguments = new Object[this.readers.length];
+        int column = startColumn;
+        for (int i = 0; i < this.readers.length; i++) {
+            arguments[i] = this.readers[i].read(rs, column);
+            column += this.readers[i].columnCount();
+        }
+        try {
+            return (T) this.constructor.invoke(arguments);
+        } catch (SQLException | RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Reader readerFor(Class<?> type) {
+        if (type == int.class)
+            return (rs, column) -> rs.getInt(column);
+        if (type == long.class)
+            return (rs, column) -> rs.getLong(column);
+        if (type == double.class)
+            return (rs, column) -> rs.getDouble(column);
+        if (type == boolean.class)
+            return (rs, column) -> rs.getBoolean(column);
+        if (type == String.class)
+            return (rs, column) -> rs.getString(column);
+        if (type.isRecord()) {
+            ReflectiveRecordMapper<?> nested = new ReflectiveRecordMapper<>(type);
+            return new Reader() {
+                @Override
+                public Object read(ResultSet rs, int column) throws SQLException {
+                    return nested.read(rs, column);
+                }
+
+                @Override
+                public int columnCount() {
+                    return nested.columnCount;
+                }
+            };
+        }
+        // Boxed types and others, like most reflection based mappers do for unknown types
+        return (rs, column) -> rs.getObject(column, type);
+    }
+
+    private interface Reader {
+        Object read(ResultSet rs, int column) throws SQLException;
+
+        default int columnCount() {
+            return 1;
+        }
+    }
+}
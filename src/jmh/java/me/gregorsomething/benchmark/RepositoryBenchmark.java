@@ -0,0 +1,85 @@
+package me.gregorsomething.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures generated repository methods against in-memory H2, so results show cost of generated code and driver,
+ * not of network. Throughput and sample time modes give operations per second and latency percentiles,
+ * run with gc profiler (configured in build.gradle) for allocations per operation.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RepositoryBenchmark {
+
+    @Benchmark
+    public BenchUser singleRowLookup(BenchmarkDatabase db) {
+        return db.repository.byId(ThreadLocalRandom.current().nextInt(1, BenchmarkDatabase.USERS + 1));
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public List<BenchUser> listMapping10k(BenchmarkDatabase db) {
+        return db.repository.firstUsers(BenchmarkDatabase.USERS);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public List<BenchOrder> complexRecordMapping(BenchmarkDatabase db) {
+        return db.repository.firstOrders(BenchmarkDatabase.ORDERS);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void batchInsert(BenchmarkDatabase db, Events events) {
+        db.repository.addEvents(events.events);
+    }
+
+    @Benchmark
+    public void transaction(BenchmarkDatabase db) {
+        int from = ThreadLocalRandom.current().nextInt(1, BenchmarkDatabase.USERS + 1);
+        int to = from % BenchmarkDatabase.USERS + 1;
+        db.repository.inTransaction(r -> {
+            r.addScore(from, -1);
+            r.addScore(to, 1);
+        });
+    }
+
+    @State(Scope.Thread)
+    public static class Events {
+        @Param("1000")
+        int size;
+        List<BenchEvent> events;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            this.events = new ArrayList<>(this.size);
+            for (int i = 0; i < this.size; i++)
+                this.events.add(new BenchEvent(i % BenchmarkDatabase.USERS + 1, "event" + i));
+        }
+
+        // Keeps table from growing through whole run, so later iterations do not measure bigger index
+        @Setup(Level.Iteration)
+        public void clear(BenchmarkDatabase db) {
+            db.repository.deleteEvents();
+        }
+    }
+}
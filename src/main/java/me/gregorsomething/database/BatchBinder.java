@@ -0,0 +1,16 @@
+package me.gregorsomething.database;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Sets parameters of prepared statement for one item of batch
+ * @param <T> item type
+ */
+@FunctionalInterface
+public interface BatchBinder<T> {
+
+    void bind(@NotNull PreparedStatement statement, T item) throws SQLException;
+}
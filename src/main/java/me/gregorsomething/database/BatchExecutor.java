@@ -0,0 +1,42 @@
+package me.gregorsomething.database;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+final class BatchExecutor {
+
+    /**
+     * Adds items to batch and executes it every time batch size is reached
+     * @return update counts for every executed batch
+     */
+    static <T> int[][] execute(PreparedStatement statement, Iterable<? extends T> items,
+                               BatchBinder<? super T> binder, int batchSize) throws SQLException {
+        if (batchSize < 1)
+            throw new IllegalArgumentException("Batch size must be positive, got " + batchSize);
+        List<int[]> results = new ArrayList<>();
+        int inBatch = 0;
+        try {
+            for (T item : items) {
+                binder.bind(statement, item);
+                statement.addBatch();
+                if (++inBatch == batchSize) {
+                    results.add(statement.executeBatch());
+                    inBatch = 0;
+                }
+            }
+            if (inBatch > 0)
+                results.add(statement.executeBatch());
+        } catch (SQLException | RuntimeException e) {
+            // Statement might be cached, so it must not keep half filled batch
+            statement.clearBatch();
+            throw e;
+        }
+        return results.toArray(new int[0][]);
+    }
+}
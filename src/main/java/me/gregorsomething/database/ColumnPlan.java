@@ -0,0 +1,73 @@
+package me.gregorsomething.database;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Resolves column labels of one query to their indexes using result set metadata.
+ * Indexes are resolved with first result and reused while result has same column count and labels at them,
+ * otherwise they are resolved again, for example when table used with {@code SELECT *} is altered.
+ * Used by generated mappers when selected columns are not known at compile time, like with {@code SELECT *}.
+ */
+public final class ColumnPlan {
+    private final String[] labels;
+    private volatile Resolved resolved;
+
+    /**
+     * @param labels column labels in order mapper reads them, case-insensitive
+     */
+    public ColumnPlan(@NotNull String... labels) {
+        this.labels = labels;
+    }
+
+    /**
+     * @param rs result of query this plan belongs to
+     * @return column index for every label, in same order as labels
+     * @throws SQLException if result does not have some of columns
+     */
+    public int[] resolve(@NotNull ResultSet rs) throws SQLException {
+        ResultSetMetaData metaData = rs.getMetaData();
+        Resolved resolved = this.resolved;
+        if (resolved == null || !this.matches(resolved, metaData)) {
+            resolved = new Resolved(metaData.getColumnCount(), this.resolveFrom(metaData));
+            this.resolved = resolved;
+        }
+        return resolved.indexes();
+    }
+
+    private boolean matches(Resolved resolved, ResultSetMetaData metaData) throws SQLException {
+        if (resolved.columnCount() != metaData.getColumnCount())
+            return false;
+        for (int i = 0; i < this.labels.length; i++) {
+            if (!this.labels[i].equalsIgnoreCase(metaData.getColumnLabel(resolved.indexes()[i])))
+                return false;
+        }
+        return true;
+    }
+
+    private int[] resolveFrom(ResultSetMetaData metaData) throws SQLException {
+        int columnCount = metaData.getColumnCount();
+        Map<String, Integer> byLabel = new HashMap<>(columnCount * 2);
+        for (int i = 1; i <= columnCount; i++) {
+            // First column wins, same as with ResultSet#findColumn
+            byLabel.putIfAbsent(metaData.getColumnLabel(i).toLowerCase(Locale.ROOT), i);
+        }
+        int[] resolved = new int[this.labels.length];
+        for (int i = 0; i < this.labels.length; i++) {
+            Integer index = byLabel.get(this.labels[i].toLowerCase(Locale.ROOT));
+            if (index == null)
+                throw new SQLException("Query result does not have column '" + this.labels[i] + "', it has " + byLabel.keySet());
+            resolved[i] = index;
+        }
+        return resolved;
+    }
+
+    private record Resolved(int columnCount, int[] indexes) {
+    }
+}
@@ -0,0 +1,45 @@
+package me.gregorsomething.database;
+
+import lombok.experimental.Delegate;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * ResultSet that owns its statement and connection, closing it releases both
+ */
+class ConnectionBoundResultSet implements ResultSet {
+    @Delegate(excludes = Owning.class)
+    private final ResultSet resultSet;
+    private final Statement statement;
+    private final Connection connection;
+
+    ConnectionBoundResultSet(ResultSet resultSet, Statement statement, Connection connection) {
+        this.resultSet = resultSet;
+        this.statement = statement;
+        this.connection = connection;
+    }
+
+    @Override
+    public void close() throws SQLException {
+        try (this.connection; this.statement; this.resultSet) {
+            // Closes all in reverse order
+        }
+    }
+
+    @Override
+    public Statement getStatement() {
+        return this.statement;
+    }
+
+    /**
+     * Methods that are not delegated to wrapped result set
+     */
+    private interface Owning {
+        void close() throws SQLException;
+
+        Statement getStatement() throws SQLException;
+    }
+}
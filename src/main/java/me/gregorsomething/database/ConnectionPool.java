@@ -0,0 +1,290 @@
+package me.gregorsomething.database;
+
+import org.jetbrains.annotations.NotNull;
+
+import javax.sql.DataSource;
+import java.lang.ref.WeakReference;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded pool of physical connections from {@link DataSource}.
+ * Threads that wait for connection are served in order they started waiting.
+ */
+public class ConnectionPool implements AutoCloseable {
+    public static final int DEFAULT_MAX_SIZE = 10;
+    public static final Duration DEFAULT_CONNECTION_TIMEOUT = Duration.ofSeconds(30);
+    public static final Duration DEFAULT_IDLE_TIMEOUT = Duration.ofMinutes(10);
+    public static final int DEFAULT_STATEMENT_CACHE_SIZE = 64;
+    /**
+     * Connections that were used more recently than that are not validated on borrow
+     */
+    private static final long VALIDATION_BYPASS_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+    private static final int VALIDATION_TIMEOUT_SECONDS = 5;
+    private static final long MIN_EVICTION_PERIOD_NANOS = TimeUnit.SECONDS.toNanos(1);
+    /**
+     * Runs eviction of all pools, daemon thread, so it does not keep JVM running
+     */
+    private static final ScheduledExecutorService EVICTOR = Executors.newSingleThreadScheduledExecutor(task -> {
+        Thread thread = new Thread(task, "connection-pool-evictor");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final DataSource dataSource;
+    private final int maxSize;
+    private final long connectionTimeoutNanos;
+    private final long idleTimeoutNanos;
+    private final int statementCacheSize;
+    private final StatementCacheCounters statementCacheCounters = new StatementCacheCounters();
+
+    // Fair lock, so waiters get connections in order they arrived
+    private final ReentrantLock lock = new ReentrantLock(true);
+    private final Condition connectionReleased = this.lock.newCondition();
+    // Last element is most recently used one
+    private final ArrayDeque<PoolEntry> idle = new ArrayDeque<>();
+    private int totalConnections;
+    private boolean closed;
+    private final ScheduledFuture<?> evictionTask;
+
+    public ConnectionPool(@NotNull DataSource dataSource, int maxSize) {
+        this(dataSource, maxSize, DEFAULT_CONNECTION_TIMEOUT, DEFAULT_IDLE_TIMEOUT);
+    }
+
+    public ConnectionPool(@NotNull DataSource dataSource, int maxSize, @NotNull Duration connectionTimeout, @NotNull Duration idleTimeout) {
+        this(dataSource, maxSize, connectionTimeout, idleTimeout, DEFAULT_STATEMENT_CACHE_SIZE);
+    }
+
+    /**
+     * Makes new pool, connections are opened lazily
+     * @param dataSource source for physical connections
+     * @param maxSize max count of open connections, if less than 1 {@link #DEFAULT_MAX_SIZE} is used
+     * @param connectionTimeout how long to wait for free connection before failing
+     * @param idleTimeout how long connection can be unused before it gets closed
+     * @param statementCacheSize count of prepared statements kept per connection, 0 disables caching
+     */
+    public ConnectionPool(@NotNull DataSource dataSource, int maxSize, @NotNull Duration connectionTimeout,
+                          @NotNull Duration idleTimeout, int statementCacheSize) {
+        this.dataSource = dataSource;
+        this.maxSize = maxSize < 1 ? DEFAULT_MAX_SIZE : maxSize;
+        this.connectionTimeoutNanos = connectionTimeout.toNanos();
+        this.idleTimeoutNanos = idleTimeout.toNanos();
+        this.statementCacheSize = statementCacheSize;
+        // Idle connections are also evicted on borrow, task closes them when pool is not used
+        long evictionPeriod = Math.max(this.idleTimeoutNanos / 2, MIN_EVICTION_PERIOD_NANOS);
+        this.evictionTask = Eviction.schedule(this, evictionPeriod);
+    }
+
+    /**
+     * Borrows connection from pool, {@link Connection#close()} returns it to pool
+     * @return connection to DB
+     * @throws SQLTimeoutException if no connection became available in time
+     */
+    public Connection getConnection() throws SQLException {
+        return this.getPooledConnection();
+    }
+
+    PooledConnection getPooledConnection() throws SQLException {
+        return new PooledConnection(this.borrow());
+    }
+
+    PoolEntry borrow() throws SQLException {
+        long deadline = System.nanoTime() + this.connectionTimeoutNanos;
+        while (true) {
+            PoolEntry entry = this.takeIdleOrReserve(deadline);
+            if (entry == null)
+                return this.openEntry();
+            if (this.isUsable(entry))
+                return entry;
+            this.discard(entry);
+        }
+    }
+
+    /**
+     * Takes idle connection or reserves place for new one
+     * @return idle connection or null if caller must open new one
+     */
+    private PoolEntry takeIdleOrReserve(long deadline) throws SQLException {
+        List<PoolEntry> evicted = new ArrayList<>();
+        this.lock.lock();
+        try {
+            while (true) {
+                if (this.closed)
+                    throw new SQLException("Connection pool is closed");
+                this.evictIdle(evicted);
+                PoolEntry entry = this.idle.pollLast();
+                if (entry != null)
+                    return entry;
+                if (this.totalConnections < this.maxSize) {
+                    this.totalConnections++;
+                    return null;
+                }
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0)
+                    throw new SQLTimeoutException("Timed out waiting for connection, pool size " + this.maxSize);
+                this.connectionReleased.awaitNanos(remaining);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for connection", e);
+        } finally {
+            this.lock.unlock();
+            evicted.forEach(PoolEntry::closePhysical);
+        }
+    }
+
+    /**
+     * Removes connections that have been idle too long, must hold lock
+     */
+    private void evictIdle(List<PoolEntry> evicted) {
+        long now = System.nanoTime();
+        // Oldest are at the start
+        while (!this.idle.isEmpty() && now - this.idle.peekFirst().getLastUsed() > this.idleTimeoutNanos) {
+            evicted.add(this.idle.pollFirst());
+            this.totalConnections--;
+        }
+    }
+
+    private void evictIdle() {
+        List<PoolEntry> evicted = new ArrayList<>();
+        this.lock.lock();
+        try {
+            if (!this.closed)
+                this.evictIdle(evicted);
+        } finally {
+            this.lock.unlock();
+        }
+        evicted.forEach(PoolEntry::closePhysical);
+    }
+
+    private PoolEntry openEntry() throws SQLException {
+        try {
+            return new PoolEntry(this, this.dataSource.getConnection(),
+                    new StatementCache(this.statementCacheSize, this.statementCacheCounters));
+        } catch (SQLException | RuntimeException e) {
+            this.releaseReservation();
+            throw e;
+        }
+    }
+
+    private boolean isUsable(PoolEntry entry) {
+        if (System.nanoTime() - entry.getLastUsed() < VALIDATION_BYPASS_NANOS)
+            return true;
+        try {
+            return entry.getConnection().isValid(VALIDATION_TIMEOUT_SECONDS);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns connection to pool, resets its state, if that fails, connection is closed
+     */
+    void release(PoolEntry entry) {
+        if (!entry.resetState()) {
+            this.discard(entry);
+            return;
+        }
+        entry.markUsed();
+        this.lock.lock();
+        try {
+            if (!this.closed) {
+                this.idle.addLast(entry);
+                this.connectionReleased.signal();
+                return;
+            }
+            this.totalConnections--;
+        } finally {
+            this.lock.unlock();
+        }
+        entry.closePhysical();
+    }
+
+    private void discard(PoolEntry entry) {
+        entry.closePhysical();
+        this.releaseReservation();
+    }
+
+    private void releaseReservation() {
+        this.lock.lock();
+        try {
+            this.totalConnections--;
+            this.connectionReleased.signal();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * @return max count of connections this pool opens
+     */
+    public int getMaxSize() {
+        return this.maxSize;
+    }
+
+    /**
+     * @return prepared statement cache counters of all connections in this pool
+     */
+    public StatementCacheStats getStatementCacheStats() {
+        return this.statementCacheCounters.snapshot();
+    }
+
+    /**
+     * Closes idle connections and stops eviction, connections in use get closed when they are returned
+     */
+    @Override
+    public void close() {
+        this.evictionTask.cancel(false);
+        List<PoolEntry> toClose;
+        this.lock.lock();
+        try {
+            this.closed = true;
+            toClose = new ArrayList<>(this.idle);
+            this.totalConnections -= this.idle.size();
+            this.idle.clear();
+            this.connectionReleased.signalAll();
+        } finally {
+            this.lock.unlock();
+        }
+        toClose.forEach(PoolEntry::closePhysical);
+    }
+
+    /**
+     * Holds pool weakly, so scheduler does not keep pool that was not closed,
+     * task cancels itself when pool is collected
+     */
+    private static final class Eviction implements Runnable {
+        private final WeakReference<ConnectionPool> pool;
+        private volatile ScheduledFuture<?> task;
+
+        private Eviction(ConnectionPool pool) {
+            this.pool = new WeakReference<>(pool);
+        }
+
+        static ScheduledFuture<?> schedule(ConnectionPool pool, long periodNanos) {
+            Eviction eviction = new Eviction(pool);
+            eviction.task = EVICTOR.scheduleWithFixedDelay(eviction, periodNanos, periodNanos, TimeUnit.NANOSECONDS);
+            return eviction.task;
+        }
+
+        @Override
+        public void run() {
+            ConnectionPool pool = this.pool.get();
+            if (pool == null)
+                this.task.cancel(false);
+            else
+                pool.evictIdle();
+        }
+    }
+}
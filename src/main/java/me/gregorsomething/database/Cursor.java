@@ -0,0 +1,116 @@
+package me.gregorsomething.database;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Reads rows of open result set one by one, so results bigger than heap can be processed.
+ * Statement and connection are held until cursor is closed, cursor closes itself when all rows are read.
+ */
+public final class Cursor<T> implements Iterator<T>, AutoCloseable {
+    /**
+     * Rows fetched from database at once when nothing else is specified
+     */
+    public static final int DEFAULT_FETCH_SIZE = 1000;
+
+    private final ResultSet resultSet;
+    private final ResultSetMapper<T> mapper;
+    private final AutoCloseable release;
+    private final int maxFetchSize;
+    private int fetchSize;
+    private boolean hasRow;
+    private boolean advanced;
+    private boolean closed;
+
+    /**
+     * @param resultSet result set to read
+     * @param mapper maps current row
+     * @param release releases statement and connection of result set
+     */
+    Cursor(@NotNull ResultSet resultSet, @NotNull ResultSetMapper<T> mapper, @NotNull AutoCloseable release) throws SQLException {
+        this.resultSet = resultSet;
+        this.mapper = mapper;
+        this.release = release;
+        this.maxFetchSize = resultSet.getFetchSize();
+        this.fetchSize = this.maxFetchSize;
+    }
+
+    /**
+     * Makes next fetch from database read no more rows than needed,
+     * never more than fetch size cursor was opened with
+     * @param rows count of rows that are going to be read
+     */
+    void limitFetchSize(long rows) throws SQLException {
+        if (this.maxFetchSize <= 0 || this.closed)
+            return;
+        int size = (int) Math.min(rows, this.maxFetchSize);
+        if (size != this.fetchSize) {
+            this.resultSet.setFetchSize(size);
+            this.fetchSize = size;
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (this.closed)
+            return false;
+        if (!this.advanced) {
+            try {
+                this.hasRow = this.resultSet.next();
+            } catch (SQLException e) {
+                this.close();
+                throw new RuntimeException(e);
+            }
+            this.advanced = true;
+            if (!this.hasRow)
+                this.close();
+        }
+        return this.hasRow;
+    }
+
+    @Override
+    public T next() {
+        if (!this.hasNext())
+            throw new NoSuchElementException();
+        this.advanced = false;
+        try {
+            return this.mapper.fromRow(this.resultSet);
+        } catch (SQLException e) {
+            this.close();
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Makes stream of remaining rows, closing stream closes this cursor
+     * @return sequential stream of rows
+     */
+    public Stream<T> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED), false)
+                .onClose(this::close);
+    }
+
+    /**
+     * Closes result set and releases its statement and connection, can be called more than once
+     */
+    @Override
+    public void close() {
+        if (this.closed)
+            return;
+        this.closed = true;
+        this.hasRow = false;
+        try (this.release; this.resultSet) {
+            // Closes result set first, then releases rest
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package me.gregorsomething.database;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.sql.SQLException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publishes rows of query, every subscriber gets its own cursor.
+ * Rows are read only when subscriber has requested them, so nothing is buffered beyond demand
+ * and driver fetch size. Rows are read and published on given executor.
+ */
+public final class CursorPublisher<T> implements Flow.Publisher<T> {
+    private final Opener<T> opener;
+    private final Executor executor;
+
+    /**
+     * @param opener opens cursor when first rows are requested
+     * @param executor runs reading of rows
+     */
+    public CursorPublisher(@NotNull Opener<T> opener, @NotNull Executor executor) {
+        this.opener = opener;
+        this.executor = executor;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super T> subscriber) {
+        subscriber.onSubscribe(new CursorSubscription<>(subscriber, this.opener, this.executor));
+    }
+
+    /**
+     * Opens cursor over query result
+     */
+    @FunctionalInterface
+    public interface Opener<T> {
+        @NotNull Cursor<T> open() throws SQLException;
+    }
+
+    /**
+     * Demand is collected from any thread, rows are emitted by one drain task at a time
+     */
+    private static final class CursorSubscription<T> implements Flow.Subscription {
+        private final Flow.Subscriber<? super T> subscriber;
+        private final Opener<T> opener;
+        private final Executor executor;
+        private final AtomicLong requested = new AtomicLong();
+        // Count of drain requests, drain is scheduled only when it goes from 0
+        private final AtomicInteger work = new AtomicInteger();
+        private volatile boolean cancelled;
+        private volatile Throwable invalidRequest;
+        // Only accessed by drain
+        private Cursor<T> cursor;
+        private boolean done;
+
+        private CursorSubscription(Flow.Subscriber<? super T> subscriber, Opener<T> opener, Executor executor) {
+            this.subscriber = subscriber;
+            this.opener = opener;
+            this.executor = executor;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                this.invalidRequest = new IllegalArgumentException("Requested count must be positive, got " + n);
+            } else {
+                this.requested.getAndAccumulate(n, (current, add) -> {
+                    long sum = current + add;
+                    return sum < 0 ? Long.MAX_VALUE : sum;
+                });
+            }
+            this.schedule();
+        }
+
+        @Override
+        public void cancel() {
+            this.cancelled = true;
+            this.schedule();
+        }
+
+        private void schedule() {
+            if (this.work.getAndIncrement() == 0)
+                this.executor.execute(this::drain);
+        }
+
+        private void drain() {
+            int missed = 1;
+            do {
+                if (!this.done)
+                    this.emit();
+                missed = this.work.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void emit() {
+            try {
+                if (this.cancelled) {
+                    this.finish(null, false);
+                    return;
+                }
+                if (this.invalidRequest != null) {
+                    this.finish(this.invalidRequest, true);
+                    return;
+                }
+                long demand = this.requested.get();
+                if (demand == 0)
+                    return;
+                if (this.cursor == null)
+                    this.cursor = this.opener.open();
+                this.cursor.limitFetchSize(demand);
+                long emitted = 0;
+                while (emitted < demand) {
+                    if (this.cancelled) {
+                        this.finish(null, false);
+                        return;
+                    }
+                    if (!this.cursor.hasNext()) {
+                        this.finish(null, true);
+                        return;
+                    }
+                    this.subscriber.onNext(this.cursor.next());
+                    emitted++;
+                }
+                // Demand that arrived meanwhile has scheduled another round
+                this.requested.addAndGet(-emitted);
+            } catch (Throwable e) {
+                this.finish(e, true);
+            }
+        }
+
+        /**
+         * Closes cursor and signals subscriber
+         * @param error error to signal, null if completed
+         * @param signal if subscriber should be signalled, cancelled subscriber is not
+         */
+        private void finish(Throwable error, boolean signal) {
+            this.done = true;
+            try {
+                if (this.cursor != null)
+                    this.cursor.close();
+            } catch (RuntimeException e) {
+                if (error == null)
+                    error = e;
+            }
+            if (!signal)
+                return;
+            if (error == null)
+                this.subscriber.onComplete();
+            else
+                this.subscriber.onError(error);
+        }
+    }
+}
@@ -1,36 +1,96 @@
 package me.gregorsomething.database;
 
+import lombok.Getter;
 import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+import org.jetbrains.annotations.Nullable;
 
 import javax.sql.DataSource;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.concurrent.Executor;
 
 @RequiredArgsConstructor
 public class DataSourceDatabase implements Database {
     private final DataSource dataSource;
+    @Getter
+    private final SchemaRegistry schemaRegistry = new SchemaRegistry(this);
+    /**
+     * Runs async methods of all repositories
+     */
+    @Getter
+    private final Executor executor = new RepositoryExecutor("database", this.getMaxConnections());
+    /**
+     * Logs slow statements of repositories, null when not enabled
+     */
+    @Getter
+    @Setter
+    private volatile @Nullable SlowQueryLog slowQueryLog;
 
     /**
      * Queries data form database
      * @param query statement that is used
      * @param values Options/arguments in that statement
-     * @return Result of query, close after use
+     * @return Result of query, close after use, closing it closes connection as well
      */
     public ResultSet query(String query, Object... values) throws SQLException {
-        try (Connection connection = this.dataSource.getConnection()) {
-            // Later that statement.closeOnCompletion() will close this as well;
+        Connection connection = this.dataSource.getConnection();
+        try {
             PreparedStatement statement = connection.prepareStatement(query);
             try {
                 for (int i = 1; i <= values.length; i++) {
                     statement.setObject(i, values[i - 1]);
                 }
-                return statement.executeQuery();
+                return new ConnectionBoundResultSet(statement.executeQuery(), statement, connection);
+            } catch (SQLException | RuntimeException e) {
+                statement.close();
+                throw e;
+            }
+        } catch (SQLException | RuntimeException e) {
+            connection.close();
+            throw e;
+        }
+    }
 
-            } finally {
-                statement.closeOnCompletion();
+    /**
+     * Queries data form database and reads it with handler
+     * @param query statement that is used
+     * @param handler reads result set
+     * @param values Options/arguments in that statement
+     * @return value returned by handler
+     */
+    public <T> T query(String query, ResultSetHandler<T> handler, Object... values) throws SQLException {
+        try (Connection connection = this.dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(query)) {
+            for (int i = 1; i <= values.length; i++) {
+                statement.setObject(i, values[i - 1]);
+            }
+            try (ResultSet rs = statement.executeQuery()) {
+                return handler.handle(rs);
+            }
+        }
+    }
+
+    /**
+     * Queries data form database, parameters are set by binder
+     * @param query statement that is used
+     * @param binder sets parameters of statement
+     * @param handler reads result set
+     * @return value returned by handler
+     */
+    public <T> T query(SqlStatement query, StatementBinder binder, ResultSetHandler<T> handler) throws SQLException {
+        QueryTimer timer = QueryTimer.start(this.slowQueryLog);
+        try (Connection connection = this.acquire(timer);
+             PreparedStatement statement = connection.prepareStatement(query.sql())) {
+            timer.prepared();
+            binder.bind(statement);
+            try (ResultSet rs = timer.executed(statement.executeQuery())) {
+                return timer.mapped(handler.handle(rs));
             }
+        } finally {
+            timer.finish(query, binder);
         }
     }
 
@@ -49,6 +109,76 @@ public class DataSourceDatabase implements Database {
         }
     }
 
+    /**
+     * Executes statement in database, parameters are set by binder
+     * @param query statement that is used
+     * @param binder sets parameters of statement
+     */
+    public void execute(SqlStatement query, StatementBinder binder) throws SQLException {
+        QueryTimer timer = QueryTimer.start(this.slowQueryLog);
+        try (Connection connection = this.acquire(timer);
+             PreparedStatement statement = connection.prepareStatement(query.sql())) {
+            timer.prepared();
+            binder.bind(statement);
+            statement.execute();
+            timer.executed();
+        } finally {
+            timer.finish(query, binder);
+        }
+    }
+
+    /**
+     * Executes statement for every item in batches
+     * @param query statement that is used
+     * @param items items to bind
+     * @param binder sets parameters of statement for one item
+     * @param batchSize max count of items sent at once
+     * @return update counts of every executed batch
+     */
+    public <T> int[][] executeBatch(SqlStatement query, Iterable<? extends T> items,
+                                    BatchBinder<? super T> binder, int batchSize) throws SQLException {
+        QueryTimer timer = QueryTimer.start(this.slowQueryLog);
+        try (Connection connection = this.acquire(timer);
+             PreparedStatement statement = connection.prepareStatement(query.sql())) {
+            timer.prepared();
+            int[][] counts = BatchExecutor.execute(statement, items, binder, batchSize);
+            timer.executed();
+            return counts;
+        } finally {
+            timer.finish(query, null);
+        }
+    }
+
+    /**
+     * Opens cursor on new connection, closing cursor closes connection.
+     * Auto commit is turned off, as Postgres uses server side cursor only in transaction
+     * @param query statement that is used
+     * @param binder sets parameters of statement
+     * @param mapper maps one row
+     * @param fetchSize count of rows fetched at once
+     * @return open cursor
+     */
+    public <T> Cursor<T> cursor(SqlStatement query, StatementBinder binder, ResultSetMapper<T> mapper, int fetchSize) throws SQLException {
+        Connection connection = this.dataSource.getConnection();
+        try {
+            connection.setAutoCommit(false);
+            PreparedStatement statement = connection.prepareStatement(query.sql());
+            try {
+                statement.setFetchSize(fetchSize);
+                binder.bind(statement);
+                ResultSet rs = new ConnectionBoundResultSet(statement.executeQuery(), statement, connection);
+                // Result set owns statement and connection
+                return new Cursor<>(rs, mapper, () -> {});
+            } catch (SQLException | RuntimeException e) {
+                statement.close();
+                throw e;
+            }
+        } catch (SQLException | RuntimeException e) {
+            connection.close();
+            throw e;
+        }
+    }
+
     /**
      * Gives new connection to Database
      * @return connection to DB
@@ -57,6 +187,12 @@ public class DataSourceDatabase implements Database {
         return this.dataSource.getConnection();
     }
 
+    private Connection acquire(QueryTimer timer) throws SQLException {
+        Connection connection = this.dataSource.getConnection();
+        timer.acquired();
+        return connection;
+    }
+
     /**
      * Closes connection to database
      */
@@ -1,11 +1,14 @@
 package me.gregorsomething.database;
 
+import org.jetbrains.annotations.Nullable;
+
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.Executor;
 
 public interface Database {
 
@@ -14,29 +17,123 @@ public interface Database {
      */
     ResultSet query(String query, Object... values) throws SQLException;
 
+    /**
+     * Queries data and reads it with handler, connection and statement are released
+     * as soon as handler returns
+     * @param query statement that is used
+     * @param handler reads result set
+     * @param values Options/arguments in that statement
+     * @return value returned by handler
+     */
+    <T> T query(String query, ResultSetHandler<T> handler, Object... values) throws SQLException;
+
+    /**
+     * Same as {@link #query(String, ResultSetHandler, Object...)}, but statement is identified by its id
+     */
+    default <T> T query(SqlStatement statement, ResultSetHandler<T> handler, Object... values) throws SQLException {
+        return this.query(statement, StatementBinder.ofValues(values), handler);
+    }
+
+    /**
+     * Queries data and reads it with handler, parameters are set by binder,
+     * so they can be set with typed setters without boxing them
+     * @param statement statement that is used
+     * @param binder sets parameters of statement
+     * @param handler reads result set
+     * @return value returned by handler
+     */
+    <T> T query(SqlStatement statement, StatementBinder binder, ResultSetHandler<T> handler) throws SQLException;
+
     void execute(String query, Object... values) throws SQLException;
 
+    /**
+     * Same as {@link #execute(String, Object...)}, but statement is identified by its id
+     */
+    default void execute(SqlStatement statement, Object... values) throws SQLException {
+        this.execute(statement, StatementBinder.ofValues(values));
+    }
+
+    /**
+     * Executes statement, parameters are set by binder
+     * @param statement statement that is used
+     * @param binder sets parameters of statement
+     */
+    void execute(SqlStatement statement, StatementBinder binder) throws SQLException;
+
+    /**
+     * Executes statement for every item, sending items to database in batches
+     * @param statement statement that is used
+     * @param items items to bind, one execution per item
+     * @param binder sets parameters of statement for one item
+     * @param batchSize max count of items sent at once
+     * @return update counts of every executed batch
+     */
+    <T> int[][] executeBatch(SqlStatement statement, Iterable<? extends T> items,
+                             BatchBinder<? super T> binder, int batchSize) throws SQLException;
+
+    /**
+     * Opens cursor over query result, rows are fetched from database in chunks of fetch size
+     * and mapped only when they are read. Statement and connection are held until cursor is closed.
+     * @param statement statement that is used
+     * @param binder sets parameters of statement
+     * @param mapper maps one row
+     * @param fetchSize count of rows fetched at once
+     * @return open cursor, must be closed after use
+     */
+    <T> Cursor<T> cursor(SqlStatement statement, StatementBinder binder, ResultSetMapper<T> mapper, int fetchSize) throws SQLException;
+
     Connection getConnection() throws SQLException;
 
     default <T> Optional<T> queryAndMap(String query, ResultSetMapper<T> mapper, Object... values) throws SQLException {
-        try (ResultSet rs = this.query(query, values)) {
-            if (!rs.isBeforeFirst())
+        return this.query(query, rs -> {
+            if (!rs.next())
                 return Optional.empty();
-            rs.next();
             return Optional.of(mapper.fromRow(rs));
-        }
+        }, values);
     }
 
     default <T> List<T> queryAndMapAll(String query, ResultSetMapper<T> mapper, Object... values) throws SQLException {
-        try (ResultSet rs = this.query(query, values)) {
-            if (!rs.isBeforeFirst())
-                return List.of();
+        return this.query(query, rs -> {
             List<T> list = new ArrayList<>();
             while (rs.next())
                 list.add(mapper.fromRow(rs));
             return List.copyOf(list);
-        }
+        }, values);
+    }
+
+    /**
+     * @return max count of connections that can be used at once, async repository methods are limited by it
+     */
+    default int getMaxConnections() {
+        return ConnectionPool.DEFAULT_MAX_SIZE;
+    }
+
+    /**
+     * @return prepared statement cache counters, empty when database does not cache statements
+     */
+    default StatementCacheStats getStatementCacheStats() {
+        return StatementCacheStats.EMPTY;
     }
 
+    /**
+     * @return log of slow repository statements, null when it is not enabled
+     */
+    default @Nullable SlowQueryLog getSlowQueryLog() {
+        return null;
+    }
+
+    /**
+     * Called by every async repository method, so implementations keep one executor,
+     * that also limits async methods of all repositories together
+     * @return executor that runs async repository methods
+     */
+    Executor getExecutor();
+
+    /**
+     * Implementations keep one registry, so schema statements of repositories are run once
+     * @return registry that runs schema statements of repositories on this database
+     */
+    SchemaRegistry getSchemaRegistry();
+
     void close();
 }
@@ -2,5 +2,19 @@ package me.gregorsomething.database;
 
 import lombok.Builder;
 
+/**
+ * Connection details used by database providers
+ * @param rewriteBatchedStatements if true, driver is allowed to rewrite batches to multi-row statements,
+ *                                 then update counts of batches might not be known
+ */
 @Builder()
-public record DatabaseDetails(String dbURL, String user, String password, String dbName, int maxPoolSize) { }
+public record DatabaseDetails(String dbURL, String user, String password, String dbName, int maxPoolSize,
+                              boolean rewriteBatchedStatements) {
+
+    /**
+     * Details where batches are not rewritten
+     */
+    public DatabaseDetails(String dbURL, String user, String password, String dbName, int maxPoolSize) {
+        this(dbURL, user, password, dbName, maxPoolSize, false);
+    }
+}
@@ -0,0 +1,43 @@
+package me.gregorsomething.database;
+
+import org.jetbrains.annotations.NotNull;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps metrics of every method in memory, every method is registered as MXBean
+ * {@code me.gregorsomething.database:type=RepositoryMetrics,name="com.example.Repository#method"}
+ */
+public final class DefaultRepositoryMetrics implements RepositoryMetrics {
+    private final Map<String, MethodMetrics> methods = new ConcurrentHashMap<>();
+
+    @Override
+    public @NotNull MethodMetrics recorder(@NotNull String method) {
+        return this.methods.computeIfAbsent(method, name -> {
+            MethodMetrics metrics = new MethodMetrics(name);
+            register(metrics);
+            return metrics;
+        });
+    }
+
+    /**
+     * @return metrics of methods by {@code com.example.Repository#method}
+     */
+    public Map<String, MethodMetrics> getMethods() {
+        return Collections.unmodifiableMap(this.methods);
+    }
+
+    private static void register(MethodMetrics metrics) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, new ObjectName(
+                    "me.gregorsomething.database:type=RepositoryMetrics,name=" + ObjectName.quote(metrics.getMethod())));
+        } catch (JMException | SecurityException ignored) {
+            // Like when same repository is loaded by other class loader, metrics are still kept in memory
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package me.gregorsomething.database;
+
+import java.util.Arrays;
+import java.util.stream.DoubleStream;
+
+/**
+ * Growable list of primitive {@code double} values, values are not boxed, so one takes 8 bytes.
+ * Returned by query methods that select one double column, use {@link #toArray()} for plain array.
+ */
+public final class DoubleList {
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final double[] EMPTY = new double[0];
+
+    private double[] values;
+    private int size;
+
+    public DoubleList() {
+        this.values = EMPTY;
+    }
+
+    /**
+     * @param initialCapacity count of values list holds without growing
+     */
+    public DoubleList(int initialCapacity) {
+        if (initialCapacity < 0)
+            throw new IllegalArgumentException("Capacity can not be negative: " + initialCapacity);
+        this.values = initialCapacity == 0 ? EMPTY : new double[initialCapacity];
+    }
+
+    public void add(double value) {
+        if (this.size == this.values.length)
+            this.grow(this.size + 1);
+        this.values[this.size++] = value;
+    }
+
+    public double get(int index) {
+        if (index < 0 || index >= this.size)
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + this.size);
+        return this.values[index];
+    }
+
+    public void set(int index, double value) {
+        if (index < 0 || index >= this.size)
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + this.size);
+        this.values[index] = value;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    public void clear() {
+        this.size = 0;
+    }
+
+    /**
+     * Makes sure list holds given count of values without growing
+     */
+    public void ensureCapacity(int capacity) {
+        if (capacity > this.values.length)
+            this.grow(capacity);
+    }
+
+    /**
+     * @return copy of values, with length of list size
+     */
+    public double[] toArray() {
+        return this.size == 0 ? EMPTY : Arrays.copyOf(this.values, this.size);
+    }
+
+    /**
+     * @return new list with same values
+     */
+    public DoubleList copy() {
+        DoubleList copy = new DoubleList(this.size);
+        System.arraycopy(this.values, 0, copy.values, 0, this.size);
+        copy.size = this.size;
+        return copy;
+    }
+
+    public DoubleStream stream() {
+        return Arrays.stream(this.values, 0, this.size);
+    }
+
+    private void grow(int minCapacity) {
+        // Grows by half, same as ArrayList
+        int capacity = Math.max(Math.max(minCapacity, DEFAULT_CAPACITY), this.values.length + (this.values.length >> 1));
+        this.values = Arrays.copyOf(this.values, capacity);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof DoubleList other)) return false;
+        return Arrays.equals(this.values, 0, this.size, other.values, 0, other.size);
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 1;
+        for (int i = 0; i < this.size; i++)
+            hash = 31 * hash + Double.hashCode(this.values[i]);
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(this.toArray());
+    }
+}
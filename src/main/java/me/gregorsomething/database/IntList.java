@@ -0,0 +1,114 @@
+package me.gregorsomething.database;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Growable list of primitive {@code int} values, values are not boxed, so one takes 4 bytes.
+ * Returned by query methods that select one int column, use {@link #toArray()} for plain array.
+ */
+public final class IntList {
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final int[] EMPTY = new int[0];
+
+    private int[] values;
+    private int size;
+
+    public IntList() {
+        this.values = EMPTY;
+    }
+
+    /**
+     * @param initialCapacity count of values list holds without growing
+     */
+    public IntList(int initialCapacity) {
+        if (initialCapacity < 0)
+            throw new IllegalArgumentException("Capacity can not be negative: " + initialCapacity);
+        this.values = initialCapacity == 0 ? EMPTY : new int[initialCapacity];
+    }
+
+    public void add(int value) {
+        if (this.size == this.values.length)
+            this.grow(this.size + 1);
+        this.values[this.size++] = value;
+    }
+
+    public int get(int index) {
+        if (index < 0 || index >= this.size)
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + this.size);
+        return this.values[index];
+    }
+
+    public void set(int index, int value) {
+        if (index < 0 || index >= this.size)
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + this.size);
+        this.values[index] = value;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    public void clear() {
+        this.size = 0;
+    }
+
+    /**
+     * Makes sure list holds given count of values without growing
+     */
+    public void ensureCapacity(int capacity) {
+        if (capacity > this.values.length)
+            this.grow(capacity);
+    }
+
+    /**
+     * @return copy of values, with length of list size
+     */
+    public int[] toArray() {
+        return this.size == 0 ? EMPTY : Arrays.copyOf(this.values, this.size);
+    }
+
+    /**
+     * @return new list with same values
+     */
+    public IntList copy() {
+        IntList copy = new IntList(this.size);
+        System.arraycopy(this.values, 0, copy.values, 0, this.size);
+        copy.size = this.size;
+        return copy;
+    }
+
+    public IntStream stream() {
+        return Arrays.stream(this.values, 0, this.size);
+    }
+
+    private void grow(int minCapacity) {
+        // Grows by half, same as ArrayList
+        int capacity = Math.max(Math.max(minCapacity, DEFAULT_CAPACITY), this.values.length + (this.values.length >> 1));
+        this.values = Arrays.copyOf(this.values, capacity);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof IntList other)) return false;
+        return Arrays.equals(this.values, 0, this.size, other.values, 0, other.size);
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 1;
+        for (int i = 0; i < this.size; i++)
+            hash = 31 * hash + Integer.hashCode(this.values[i]);
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(this.toArray());
+    }
+}
@@ -0,0 +1,230 @@
+package me.gregorsomething.database;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Map with primitive {@code int} keys, keys are not boxed when {@link #get(int)} and {@link #put(int, Object)} are used.
+ * Uses open addressing with linear probing, so lookups touch one or two adjacent slots.
+ * Returned by query methods with {@code Map<Integer, V>} return type and used to group rows of join.
+ */
+public final class IntObjectMap<V> extends AbstractMap<Integer, V> {
+    private static final int MIN_CAPACITY = 16;
+    // Marks slot that holds null value, as null marks empty slot
+    private static final Object NULL_VALUE = new Object();
+
+    private int[] keys;
+    private Object[] values;
+    private int size;
+    private int mask;
+
+    public IntObjectMap() {
+        this(MIN_CAPACITY / 2);
+    }
+
+    /**
+     * @param expectedSize count of keys map holds without resizing
+     */
+    public IntObjectMap(int expectedSize) {
+        this.allocate(capacityFor(expectedSize));
+    }
+
+    /**
+     * @return value for key, null if key is not in map
+     */
+    public @Nullable V get(int key) {
+        int slot = this.find(key);
+        return slot < 0 ? null : this.valueAt(slot);
+    }
+
+    public boolean containsKey(int key) {
+        return this.find(key) >= 0;
+    }
+
+    /**
+     * @return previous value for key, null if key was not in map
+     */
+    public @Nullable V put(int key, @Nullable V value) {
+        Object stored = value == null ? NULL_VALUE : value;
+        int slot = this.slotOf(key);
+        while (this.values[slot] != null) {
+            if (this.keys[slot] == key) {
+                V previous = this.valueAt(slot);
+                this.values[slot] = stored;
+                return previous;
+            }
+            slot = (slot + 1) & this.mask;
+        }
+        this.keys[slot] = key;
+        this.values[slot] = stored;
+        // Load factor is kept at most 0.5, so probe sequences stay short
+        if (++this.size * 2 > this.keys.length)
+            this.resize();
+        return null;
+    }
+
+    /**
+     * @return removed value, null if key was not in map
+     */
+    public @Nullable V remove(int key) {
+        int slot = this.find(key);
+        if (slot < 0)
+            return null;
+        V previous = this.valueAt(slot);
+        this.size--;
+        // Moves following entries back, so probe sequences do not have gaps
+        int gap = slot;
+        int next = (gap + 1) & this.mask;
+        while (this.values[next] != null) {
+            int home = this.slotOf(this.keys[next]);
+            if (((next - home) & this.mask) >= ((next - gap) & this.mask)) {
+                this.keys[gap] = this.keys[next];
+                this.values[gap] = this.values[next];
+                gap = next;
+            }
+            next = (next + 1) & this.mask;
+        }
+        this.values[gap] = null;
+        return previous;
+    }
+
+    @Override
+    public V get(Object key) {
+        return key instanceof Integer k ? this.get(k.intValue()) : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return key instanceof Integer k && this.containsKey(k.intValue());
+    }
+
+    @Override
+    public V put(@NotNull Integer key, V value) {
+        return this.put(key.intValue(), value);
+    }
+
+    @Override
+    public V remove(Object key) {
+        return key instanceof Integer k ? this.remove(k.intValue()) : null;
+    }
+
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(this.values, null);
+        this.size = 0;
+    }
+
+    @Override
+    public @NotNull Set<Entry<Integer, V>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public @NotNull Iterator<Entry<Integer, V>> iterator() {
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size() {
+                return IntObjectMap.this.size;
+            }
+        };
+    }
+
+    private int find(int key) {
+        int slot = this.slotOf(key);
+        while (this.values[slot] != null) {
+            if (this.keys[slot] == key)
+                return slot;
+            slot = (slot + 1) & this.mask;
+        }
+        return -1;
+    }
+
+    @SuppressWarnings("unchecked")
+    private V valueAt(int slot) {
+        Object value = this.values[slot];
+        return value == NULL_VALUE ? null : (V) value;
+    }
+
+    private int slotOf(int key) {
+        // Spreads ids that are often sequential or multiples of some step
+        int hash = key * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & this.mask;
+    }
+
+    private void resize() {
+        int[] oldKeys = this.keys;
+        Object[] oldValues = this.values;
+        this.allocate(oldKeys.length * 2);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] == null)
+                continue;
+            int slot = this.slotOf(oldKeys[i]);
+            while (this.values[slot] != null)
+                slot = (slot + 1) & this.mask;
+            this.keys[slot] = oldKeys[i];
+            this.values[slot] = oldValues[i];
+        }
+    }
+
+    private void allocate(int capacity) {
+        this.keys = new int[capacity];
+        this.values = new Object[capacity];
+        this.mask = capacity - 1;
+    }
+
+    private static int capacityFor(int expectedSize) {
+        if (expectedSize < 0)
+            throw new IllegalArgumentException("Expected size can not be negative: " + expectedSize);
+        int capacity = MIN_CAPACITY;
+        while (capacity < expectedSize * 2L && capacity < (1 << 30))
+            capacity <<= 1;
+        return capacity;
+    }
+
+    /**
+     * Iterates slots in order, entries write values through to map
+     */
+    private final class EntryIterator implements Iterator<Entry<Integer, V>> {
+        private int slot = this.nextFrom(0);
+
+        @Override
+        public boolean hasNext() {
+            return this.slot < IntObjectMap.this.values.length;
+        }
+
+        @Override
+        public Entry<Integer, V> next() {
+            if (!this.hasNext())
+                throw new NoSuchElementException();
+            int current = this.slot;
+            this.slot = this.nextFrom(current + 1);
+            return new SimpleEntry<>(IntObjectMap.this.keys[current], IntObjectMap.this.valueAt(current)) {
+                @Override
+                public V setValue(V value) {
+                    IntObjectMap.this.values[current] = value == null ? NULL_VALUE : value;
+                    return super.setValue(value);
+                }
+            };
+        }
+
+        private int nextFrom(int from) {
+            Object[] values = IntObjectMap.this.values;
+            int slot = from;
+            while (slot < values.length && values[slot] == null)
+                slot++;
+            return slot;
+        }
+    }
+}
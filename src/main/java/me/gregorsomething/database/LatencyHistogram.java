@@ -0,0 +1,103 @@
+package me.gregorsomething.database;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of latencies in nanoseconds with fixed log-linear buckets, like HdrHistogram
+ * with 2 significant bits: every power of two is split to 4 buckets, so value is known within 25%.
+ * Counts are striped by thread, so threads recording at once rarely write same cache line.
+ */
+public final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 2;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // Values below SUB_BUCKETS have own bucket, then every power of two up to 2^63 has SUB_BUCKETS buckets
+    static final int BUCKETS = SUB_BUCKETS * (Long.SIZE - SUB_BUCKET_BITS + 1);
+    private static final int MAX_STRIPES = 8;
+
+    private final AtomicLongArray[] stripes;
+    private final int stripeMask;
+
+    public LatencyHistogram() {
+        int stripes = Math.min(MAX_STRIPES, Integer.highestOneBit(Runtime.getRuntime().availableProcessors()));
+        this.stripes = new AtomicLongArray[stripes];
+        for (int i = 0; i < stripes; i++)
+            this.stripes[i] = new AtomicLongArray(BUCKETS);
+        this.stripeMask = stripes - 1;
+    }
+
+    /**
+     * @param nanos latency, negative values are counted as 0
+     */
+    public void record(long nanos) {
+        int stripe = (int) Thread.currentThread().threadId() & this.stripeMask;
+        this.stripes[stripe].getAndIncrement(bucketOf(Math.max(0, nanos)));
+    }
+
+    /**
+     * Sums stripes, counts recorded meanwhile can be in it or not
+     */
+    public Snapshot snapshot() {
+        long[] counts = new long[BUCKETS];
+        for (AtomicLongArray stripe : this.stripes) {
+            for (int i = 0; i < BUCKETS; i++)
+                counts[i] += stripe.get(i);
+        }
+        return new Snapshot(counts);
+    }
+
+    static int bucketOf(long value) {
+        if (value < SUB_BUCKETS)
+            return (int) value;
+        int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return SUB_BUCKETS * (exponent - SUB_BUCKET_BITS + 1) + subBucket;
+    }
+
+    /**
+     * @return largest value that falls to bucket
+     */
+    static long highestValueOf(int bucket) {
+        if (bucket < SUB_BUCKETS)
+            return bucket;
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long lowest = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << (exponent - SUB_BUCKET_BITS);
+        return lowest + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+
+    /**
+     * Counts of histogram at one moment
+     */
+    public static final class Snapshot {
+        private final long[] counts;
+        private final long total;
+
+        private Snapshot(long[] counts) {
+            this.counts = counts;
+            long total = 0;
+            for (long count : counts)
+                total += count;
+            this.total = total;
+        }
+
+        public long getCount() {
+            return this.total;
+        }
+
+        /**
+         * @param percentile from 0 to 100, 100 gives max
+         * @return upper bound of bucket that has value at percentile, 0 when nothing was recorded
+         */
+        public long valueAtPercentile(double percentile) {
+            if (this.total == 0)
+                return 0;
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100 * this.total));
+            long seen = 0;
+            for (int i = 0; i < this.counts.length; i++) {
+                seen += this.counts[i];
+                if (seen >= rank)
+                    return highestValueOf(i);
+            }
+            return highestValueOf(this.counts.length - 1);
+        }
+    }
+}
@@ -17,14 +17,15 @@ public class MariaDBDatabaseProvider {
     public static Database of(DatabaseDetails details, Consumer<MariaDbDataSource> extraConfig) throws SQLException {
         MariaDbDataSource dataSource = new MariaDbDataSource();
         dataSource.setUrl("jdbc:mariadb://" + details.dbURL() +
-                "/" + details.dbName() + "?user=" + details.user() + "&password=" + details.password());
+                "/" + details.dbName() + "?user=" + details.user() + "&password=" + details.password() +
+                "&useBulkStmts=" + details.rewriteBatchedStatements());
         extraConfig.accept(dataSource);
-        return new DataSourceDatabase(dataSource);
+        return new PooledDatabase(dataSource, details.maxPoolSize());
     }
 
     public static Database of(Consumer<MariaDbDataSource> dataSourceConfigurer) {
         MariaDbDataSource dataSource = new MariaDbDataSource();
         dataSourceConfigurer.accept(dataSource);
-        return new DataSourceDatabase(dataSource);
+        return new PooledDatabase(dataSource, ConnectionPool.DEFAULT_MAX_SIZE);
     }
 }
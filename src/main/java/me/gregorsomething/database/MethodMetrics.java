@@ -0,0 +1,102 @@
+package me.gregorsomething.database;
+
+import lombok.Getter;
+import org.jetbrains.annotations.NotNull;
+
+import java.sql.SQLException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics of one repository method, kept by {@link DefaultRepositoryMetrics}.
+ * All counters are striped, so methods called from many threads do not contend on them.
+ */
+public final class MethodMetrics implements RepositoryMetrics.Recorder, MethodMetricsMXBean {
+    // Exception causes that are checked for SQLException, they are usually wrapped once or twice
+    private static final int MAX_CAUSE_DEPTH = 4;
+
+    @Getter
+    private final String method;
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder rows = new LongAdder();
+    private final LongAdder sqlErrors = new LongAdder();
+    private final LongAdder otherErrors = new LongAdder();
+    @Getter
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    MethodMetrics(String method) {
+        this.method = method;
+    }
+
+    @Override
+    public void success(long nanos, long rows) {
+        this.calls.increment();
+        if (rows > 0)
+            this.rows.add(rows);
+        this.latency.record(nanos);
+    }
+
+    @Override
+    public void failure(long nanos, @NotNull Throwable error) {
+        this.calls.increment();
+        if (isSqlError(error))
+            this.sqlErrors.increment();
+        else
+            this.otherErrors.increment();
+        this.latency.record(nanos);
+    }
+
+    @Override
+    public long getCalls() {
+        return this.calls.sum();
+    }
+
+    @Override
+    public long getRows() {
+        return this.rows.sum();
+    }
+
+    @Override
+    public long getSqlErrors() {
+        return this.sqlErrors.sum();
+    }
+
+    @Override
+    public long getOtherErrors() {
+        return this.otherErrors.sum();
+    }
+
+    @Override
+    public double getLatencyP50Micros() {
+        return this.latency.snapshot().valueAtPercentile(50) / 1000.0;
+    }
+
+    @Override
+    public double getLatencyP90Micros() {
+        return this.latency.snapshot().valueAtPercentile(90) / 1000.0;
+    }
+
+    @Override
+    public double getLatencyP99Micros() {
+        return this.latency.snapshot().valueAtPercentile(99) / 1000.0;
+    }
+
+    @Override
+    public double getLatencyP999Micros() {
+        return this.latency.snapshot().valueAtPercentile(99.9) / 1000.0;
+    }
+
+    @Override
+    public double getLatencyMaxMicros() {
+        return this.latency.snapshot().valueAtPercentile(100) / 1000.0;
+    }
+
+    private static boolean isSqlError(Throwable error) {
+        Throwable current = error;
+        for (int i = 0; i < MAX_CAUSE_DEPTH && current != null; i++) {
+            if (current instanceof SQLException)
+                return true;
+            current = current.getCause();
+        }
+        return false;
+    }
+}
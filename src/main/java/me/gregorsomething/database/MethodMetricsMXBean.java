@@ -0,0 +1,27 @@
+package me.gregorsomething.database;
+
+/**
+ * Metrics of one repository method published through JMX, latencies are upper bounds of histogram buckets
+ */
+public interface MethodMetricsMXBean {
+
+    String getMethod();
+
+    long getCalls();
+
+    long getRows();
+
+    long getSqlErrors();
+
+    long getOtherErrors();
+
+    double getLatencyP50Micros();
+
+    double getLatencyP90Micros();
+
+    double getLatencyP99Micros();
+
+    double getLatencyP999Micros();
+
+    double getLatencyMaxMicros();
+}
@@ -0,0 +1,130 @@
+package me.gregorsomething.database;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Physical connection owned by {@link ConnectionPool}
+ */
+@Getter(AccessLevel.PACKAGE)
+class PoolEntry {
+    private final ConnectionPool pool;
+    private final Connection connection;
+    private final StatementCache statementCache;
+    private volatile long lastUsed;
+    // Isolation level connection was opened with, read when transaction first changes it
+    private int defaultIsolation = -1;
+    private boolean isolationChanged;
+    private boolean readOnlyChanged;
+    // Catalog and schema connection was opened with, read when borrower first changes them
+    private String defaultCatalog;
+    private boolean catalogChanged;
+    private String defaultSchema;
+    private boolean schemaChanged;
+
+    PoolEntry(ConnectionPool pool, Connection connection, StatementCache statementCache) {
+        this.pool = pool;
+        this.connection = connection;
+        this.statementCache = statementCache;
+        this.lastUsed = System.nanoTime();
+    }
+
+    void markUsed() {
+        this.lastUsed = System.nanoTime();
+    }
+
+    /**
+     * Sets isolation level for transaction, it is restored when connection is returned to pool
+     */
+    void changeIsolation(int level) throws SQLException {
+        if (this.defaultIsolation == -1)
+            this.defaultIsolation = this.connection.getTransactionIsolation();
+        if (level == this.defaultIsolation && !this.isolationChanged)
+            return;
+        this.connection.setTransactionIsolation(level);
+        this.isolationChanged = level != this.defaultIsolation;
+    }
+
+    /**
+     * Makes connection read only for transaction, it is made writable when connection is returned to pool
+     */
+    void changeToReadOnly() throws SQLException {
+        this.changeReadOnly(true);
+    }
+
+    /**
+     * Pooled connections are given out writable, so only read only has to be reset
+     */
+    void changeReadOnly(boolean readOnly) throws SQLException {
+        this.connection.setReadOnly(readOnly);
+        this.readOnlyChanged = readOnly;
+    }
+
+    /**
+     * Sets catalog, it is restored when connection is returned to pool
+     */
+    void changeCatalog(String catalog) throws SQLException {
+        if (!this.catalogChanged)
+            this.defaultCatalog = this.connection.getCatalog();
+        this.connection.setCatalog(catalog);
+        this.catalogChanged = true;
+    }
+
+    /**
+     * Sets schema, it is restored when connection is returned to pool
+     */
+    void changeSchema(String schema) throws SQLException {
+        if (!this.schemaChanged)
+            this.defaultSchema = this.connection.getSchema();
+        this.connection.setSchema(schema);
+        this.schemaChanged = true;
+    }
+
+    /**
+     * Resets connection to state it was given out with
+     * @return false if connection can not be reused
+     */
+    boolean resetState() {
+        try {
+            if (this.connection.isClosed())
+                return false;
+            if (!this.connection.getAutoCommit()) {
+                this.connection.rollback();
+                this.connection.setAutoCommit(true);
+            }
+            // Only changed settings are reset, so most returns do not need round-trip to database
+            if (this.isolationChanged) {
+                this.connection.setTransactionIsolation(this.defaultIsolation);
+                this.isolationChanged = false;
+            }
+            if (this.readOnlyChanged) {
+                this.connection.setReadOnly(false);
+                this.readOnlyChanged = false;
+            }
+            if (this.catalogChanged) {
+                this.connection.setCatalog(this.defaultCatalog);
+                this.catalogChanged = false;
+            }
+            if (this.schemaChanged) {
+                this.connection.setSchema(this.defaultSchema);
+                this.schemaChanged = false;
+            }
+            this.connection.clearWarnings();
+            return true;
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    void closePhysical() {
+        this.statementCache.close();
+        try {
+            this.connection.close();
+        } catch (SQLException ignored) {
+            // Connection is discarded anyway
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package me.gregorsomething.database;
+
+import lombok.SneakyThrows;
+import lombok.experimental.Delegate;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Connection handed out by {@link ConnectionPool}, closing it returns physical connection to pool.
+ * New instance is made for every borrow, so closing it twice does not return connection twice.
+ * Settings changed with its setters are reset when it is returned.
+ */
+class PooledConnection implements Connection {
+    private final Connection connection;
+    private final PoolEntry entry;
+    private volatile boolean closed;
+
+    PooledConnection(PoolEntry entry) {
+        this.entry = entry;
+        this.connection = entry.getConnection();
+    }
+
+    PoolEntry getEntry() {
+        return this.entry;
+    }
+
+    /**
+     * Physical connection for delegated methods, throws SQLException if this connection is closed
+     */
+    @Delegate(excludes = PoolManaged.class)
+    @SneakyThrows
+    private Connection physical() {
+        this.ensureOpen();
+        return this.connection;
+    }
+
+    /**
+     * After close physical connection can be already used by other borrower
+     */
+    private void ensureOpen() throws SQLException {
+        if (this.closed)
+            throw new SQLException("Connection is closed, it was returned to pool");
+    }
+
+    /**
+     * Prepares statement using connections statement cache,
+     * give it back with {@link #releaseCached(PreparedStatement)}
+     */
+    PreparedStatement prepareCached(String sql) throws SQLException {
+        return this.entry.getStatementCache().prepare(this.physical(), sql);
+    }
+
+    PreparedStatement prepareCached(SqlStatement statement) throws SQLException {
+        return this.entry.getStatementCache().prepare(this.physical(), statement);
+    }
+
+    void releaseCached(PreparedStatement statement) throws SQLException {
+        this.entry.getStatementCache().release(statement);
+    }
+
+    void invalidateCached(String sql) {
+        this.entry.getStatementCache().invalidate(sql);
+    }
+
+    void invalidateCached(SqlStatement statement) {
+        this.entry.getStatementCache().invalidate(statement);
+    }
+
+    @Override
+    public void close() {
+        if (this.closed)
+            return;
+        this.closed = true;
+        this.entry.getPool().release(this.entry);
+    }
+
+    @Override
+    public boolean isClosed() throws SQLException {
+        return this.closed || this.connection.isClosed();
+    }
+
+    @Override
+    public void setReadOnly(boolean readOnly) throws SQLException {
+        this.ensureOpen();
+        this.entry.changeReadOnly(readOnly);
+    }
+
+    @Override
+    public void setTransactionIsolation(int level) throws SQLException {
+        this.ensureOpen();
+        this.entry.changeIsolation(level);
+    }
+
+    @Override
+    public void setCatalog(String catalog) throws SQLException {
+        this.ensureOpen();
+        this.entry.changeCatalog(catalog);
+    }
+
+    @Override
+    public void setSchema(String schema) throws SQLException {
+        this.ensureOpen();
+        this.entry.changeSchema(schema);
+    }
+
+    /**
+     * Methods that are not delegated to physical connection
+     */
+    private interface PoolManaged {
+        void close() throws SQLException;
+
+        boolean isClosed() throws SQLException;
+
+        void setReadOnly(boolean readOnly) throws SQLException;
+
+        void setTransactionIsolation(int level) throws SQLException;
+
+        void setCatalog(String catalog) throws SQLException;
+
+        void setSchema(String schema) throws SQLException;
+    }
+}
@@ -0,0 +1,273 @@
+package me.gregorsomething.database;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.Executor;
+
+/**
+ * Database that reuses connections from {@link ConnectionPool}
+ */
+public class PooledDatabase implements Database {
+    @Getter
+    private final ConnectionPool pool;
+    @Getter
+    private final SchemaRegistry schemaRegistry = new SchemaRegistry(this);
+    /**
+     * Runs async methods of all repositories, at most pool size at once
+     */
+    @Getter
+    private final Executor executor;
+    /**
+     * Logs slow statements of repositories, null when not enabled
+     */
+    @Getter
+    @Setter
+    private volatile @Nullable SlowQueryLog slowQueryLog;
+
+    public PooledDatabase(@NotNull DataSource dataSource, int maxPoolSize) {
+        this(new ConnectionPool(dataSource, maxPoolSize));
+    }
+
+    public PooledDatabase(@NotNull ConnectionPool pool) {
+        this.pool = pool;
+        this.executor = new RepositoryExecutor("pooled-database", pool.getMaxSize());
+    }
+
+    /**
+     * Queries data form database, connection is kept from pool until result set is closed
+     * @param query statement that is used
+     * @param values Options/arguments in that statement
+     * @return Result of query, close after use
+     */
+    @Override
+    public ResultSet query(String query, Object... values) throws SQLException {
+        Connection connection = this.pool.getConnection();
+        try {
+            PreparedStatement statement = connection.prepareStatement(query);
+            try {
+                for (int i = 1; i <= values.length; i++) {
+                    statement.setObject(i, values[i - 1]);
+                }
+                return new ConnectionBoundResultSet(statement.executeQuery(), statement, connection);
+            } catch (SQLException | RuntimeException e) {
+                statement.close();
+                throw e;
+            }
+        } catch (SQLException | RuntimeException e) {
+            connection.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Queries data form database and reads it with handler,
+     * connection is returned to pool right after handler returns
+     * @param query statement that is used
+     * @param handler reads result set
+     * @param values Options/arguments in that statement
+     * @return value returned by handler
+     */
+    @Override
+    public <T> T query(String query, ResultSetHandler<T> handler, Object... values) throws SQLException {
+        try (PooledConnection connection = this.pool.getPooledConnection()) {
+            PreparedStatement statement = connection.prepareCached(query);
+            try {
+                for (int i = 1; i <= values.length; i++) {
+                    statement.setObject(i, values[i - 1]);
+                }
+                try (ResultSet rs = statement.executeQuery()) {
+                    return handler.handle(rs);
+                }
+            } catch (SQLException e) {
+                connection.invalidateCached(query);
+                throw e;
+            } finally {
+                connection.releaseCached(statement);
+            }
+        }
+    }
+
+    /**
+     * Queries data with statement cached by its id, parameters are set by binder
+     * @param query statement that is used
+     * @param binder sets parameters of statement
+     * @param handler reads result set
+     * @return value returned by handler
+     */
+    @Override
+    public <T> T query(SqlStatement query, StatementBinder binder, ResultSetHandler<T> handler) throws SQLException {
+        QueryTimer timer = QueryTimer.start(this.slowQueryLog);
+        try (PooledConnection connection = this.pool.getPooledConnection()) {
+            timer.acquired();
+            PreparedStatement statement = connection.prepareCached(query);
+            timer.prepared();
+            try {
+                binder.bind(statement);
+                try (ResultSet rs = timer.executed(statement.executeQuery())) {
+                    return timer.mapped(handler.handle(rs));
+                }
+            } catch (SQLException e) {
+                connection.invalidateCached(query);
+                throw e;
+            } finally {
+                connection.releaseCached(statement);
+            }
+        } finally {
+            timer.finish(query, binder);
+        }
+    }
+
+    /**
+     * Executes statement in database
+     * @param query statement that is used
+     * @param values Options/arguments in that statement
+     */
+    @Override
+    public void execute(String query, Object... values) throws SQLException {
+        try (PooledConnection connection = this.pool.getPooledConnection()) {
+            PreparedStatement statement = connection.prepareCached(query);
+            try {
+                for (int i = 1; i <= values.length; i++) {
+                    statement.setObject(i, values[i - 1]);
+                }
+                statement.execute();
+            } catch (SQLException e) {
+                connection.invalidateCached(query);
+                throw e;
+            } finally {
+                connection.releaseCached(statement);
+            }
+        }
+    }
+
+    /**
+     * Executes statement cached by its id, parameters are set by binder
+     * @param query statement that is used
+     * @param binder sets parameters of statement
+     */
+    @Override
+    public void execute(SqlStatement query, StatementBinder binder) throws SQLException {
+        QueryTimer timer = QueryTimer.start(this.slowQueryLog);
+        try (PooledConnection connection = this.pool.getPooledConnection()) {
+            timer.acquired();
+            PreparedStatement statement = connection.prepareCached(query);
+            timer.prepared();
+            try {
+                binder.bind(statement);
+                statement.execute();
+                timer.executed();
+            } catch (SQLException e) {
+                connection.invalidateCached(query);
+                throw e;
+            } finally {
+                connection.releaseCached(statement);
+            }
+        } finally {
+            timer.finish(query, binder);
+        }
+    }
+
+    /**
+     * Executes statement for every item in batches, using one pooled connection
+     * @param query statement that is used
+     * @param items items to bind
+     * @param binder sets parameters of statement for one item
+     * @param batchSize max count of items sent at once
+     * @return update counts of every executed batch
+     */
+    @Override
+    public <T> int[][] executeBatch(SqlStatement query, Iterable<? extends T> items,
+                                    BatchBinder<? super T> binder, int batchSize) throws SQLException {
+        QueryTimer timer = QueryTimer.start(this.slowQueryLog);
+        try (PooledConnection connection = this.pool.getPooledConnection()) {
+            timer.acquired();
+            PreparedStatement statement = connection.prepareCached(query);
+            timer.prepared();
+            try {
+                int[][] counts = BatchExecutor.execute(statement, items, binder, batchSize);
+                timer.executed();
+                return counts;
+            } catch (SQLException e) {
+                connection.invalidateCached(query);
+                throw e;
+            } finally {
+                connection.releaseCached(statement);
+            }
+        } finally {
+            timer.finish(query, null);
+        }
+    }
+
+    /**
+     * Opens cursor, connection is kept from pool until cursor is closed.
+     * Auto commit is turned off for that time, as Postgres uses server side cursor only in transaction.
+     * Statement is not cached, as it stays open as long as cursor
+     * @param query statement that is used
+     * @param binder sets parameters of statement
+     * @param mapper maps one row
+     * @param fetchSize count of rows fetched at once
+     * @return open cursor
+     */
+    @Override
+    public <T> Cursor<T> cursor(SqlStatement query, StatementBinder binder, ResultSetMapper<T> mapper, int fetchSize) throws SQLException {
+        Connection connection = this.pool.getConnection();
+        try {
+            connection.setAutoCommit(false);
+            PreparedStatement statement = connection.prepareStatement(query.sql());
+            try {
+                statement.setFetchSize(fetchSize);
+                binder.bind(statement);
+                ResultSet rs = new ConnectionBoundResultSet(statement.executeQuery(), statement, connection);
+                // Result set owns statement and connection, connection is reset when it gets back to pool
+                return new Cursor<>(rs, mapper, () -> {});
+            } catch (SQLException | RuntimeException e) {
+                statement.close();
+                throw e;
+            }
+        } catch (SQLException | RuntimeException e) {
+            connection.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Borrows connection from pool
+     * @return connection to DB, closing it returns it to pool
+     */
+    @Override
+    public Connection getConnection() throws SQLException {
+        return this.pool.getConnection();
+    }
+
+    /**
+     * @return size of connection pool
+     */
+    @Override
+    public int getMaxConnections() {
+        return this.pool.getMaxSize();
+    }
+
+    /**
+     * @return prepared statement cache counters of pooled connections
+     */
+    @Override
+    public StatementCacheStats getStatementCacheStats() {
+        return this.pool.getStatementCacheStats();
+    }
+
+    /**
+     * Closes pool and its connections
+     */
+    @Override
+    public void close() {
+        this.pool.close();
+    }
+}
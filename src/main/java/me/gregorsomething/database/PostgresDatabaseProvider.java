@@ -17,13 +17,14 @@ public final class PostgresDatabaseProvider {
         PGSimpleDataSource dataSource = new PGSimpleDataSource();
         dataSource.setUrl("jdbc:postgresql://" + details.dbURL() +
                 "/" + details.dbName() + "?user=" + details.user() + "&password=" + details.password());
+        dataSource.setReWriteBatchedInserts(details.rewriteBatchedStatements());
         extraConfig.accept(dataSource);
-        return new DataSourceDatabase(dataSource);
+        return new PooledDatabase(dataSource, details.maxPoolSize());
     }
 
     public static Database of(Consumer<PGSimpleDataSource> dataSourceConfigurer) {
         PGSimpleDataSource dataSource = new PGSimpleDataSource();
         dataSourceConfigurer.accept(dataSource);
-        return new DataSourceDatabase(dataSource);
+        return new PooledDatabase(dataSource, ConnectionPool.DEFAULT_MAX_SIZE);
     }
 }
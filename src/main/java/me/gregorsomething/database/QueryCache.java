@@ -0,0 +1,324 @@
+package me.gregorsomething.database;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ToIntFunction;
+
+/**
+ * Read-through cache of query results for one repository method.
+ * Entries are split to segments by key hash, every segment has own lock, map and least recently used order,
+ * so lookups of different keys rarely wait for each other. {@code int} and {@code long} keys are not boxed.
+ * Concurrent misses of same key run loader once, others wait for its result.
+ * Cache is invalidated by increasing its version, so checking if entry is current takes one volatile read
+ * and stale entries are replaced when they are read or evicted.
+ */
+public final class QueryCache<V> {
+    private static final int MAX_SEGMENTS = 16;
+
+    private final Segment<V>[] segments;
+    private final int segmentMask;
+    private final long ttlNanos;
+    private final @Nullable ToIntFunction<? super V> weigher;
+    private final AtomicLong version = new AtomicLong();
+
+    /**
+     * @param ttlNanos time entry is kept after loading, 0 for no expiry
+     * @param maxEntries max count of entries, split evenly between segments
+     * @param maxWeight max weight of all entries, split evenly between segments, 0 for no limit
+     * @param weigher weight of value, null when every value weighs 1
+     */
+    @SuppressWarnings("unchecked")
+    public QueryCache(long ttlNanos, int maxEntries, long maxWeight, @Nullable ToIntFunction<? super V> weigher) {
+        if (ttlNanos < 0 || maxEntries <= 0 || maxWeight < 0)
+            throw new IllegalArgumentException("Cache ttl and max weight can not be negative and max entries must be positive");
+        int count = Math.min(MAX_SEGMENTS, Integer.highestOneBit(maxEntries));
+        this.segments = new Segment[count];
+        for (int i = 0; i < count; i++) {
+            this.segments[i] = new Segment<>(
+                    (maxEntries + count - 1) / count,
+                    maxWeight == 0 ? Long.MAX_VALUE : Math.max(1, (maxWeight + count - 1) / count));
+        }
+        this.segmentMask = count - 1;
+        this.ttlNanos = ttlNanos;
+        this.weigher = weigher;
+    }
+
+    /**
+     * @param key arguments of method, must have value based equals
+     * @param loader runs query when key is not cached
+     * @return cached or loaded value
+     * @throws SQLException if loader failed, failures are not cached
+     */
+    public V get(@Nullable Object key, @NotNull Loader<? extends V> loader) throws SQLException {
+        int hash = key == null ? 0 : key.hashCode();
+        return this.load(this.segmentFor(hash), key, 0, false, loader);
+    }
+
+    /**
+     * Same as {@link #get(Object, Loader)}, but key is not boxed for lookup
+     */
+    public V get(long key, @NotNull Loader<? extends V> loader) throws SQLException {
+        return this.load(this.segmentFor(Long.hashCode(key)), null, key, true, loader);
+    }
+
+    /**
+     * Makes all entries stale, loads that are running are not used for later calls
+     */
+    public void invalidate() {
+        this.version.incrementAndGet();
+    }
+
+    /**
+     * Same as {@link #invalidate()}, but in transaction cache is invalidated when transaction is committed
+     * @param transaction transaction that changed data, null if change is already committed
+     */
+    public void invalidate(@Nullable Transaction transaction) {
+        if (transaction == null)
+            this.invalidate();
+        else
+            transaction.invalidateOnCommit(this);
+    }
+
+    /**
+     * Removes all entries, loads that are running are not cached
+     */
+    public void invalidateAll() {
+        for (Segment<V> segment : this.segments)
+            segment.clear();
+    }
+
+    public long size() {
+        long size = 0;
+        for (Segment<V> segment : this.segments)
+            size += segment.size();
+        return size;
+    }
+
+    private Segment<V> segmentFor(int hash) {
+        // Segment takes high bits, as maps of segments use low ones
+        hash *= 0x9E3779B9;
+        return this.segments[(hash >>> 16) & this.segmentMask];
+    }
+
+    private V load(Segment<V> segment, @Nullable Object objectKey, long primitiveKey, boolean primitive,
+                   Loader<? extends V> loader) throws SQLException {
+        long version = this.version.get();
+        long now = System.nanoTime();
+        Entry<V> created;
+        Entry<V> existing;
+        segment.lock.lock();
+        try {
+            existing = segment.find(objectKey, primitiveKey, primitive);
+            if (existing != null && existing.version >= version && (!existing.loaded || !this.isExpired(existing, now))) {
+                if (existing.loaded)
+                    segment.moveToHead(existing);
+            } else {
+                if (existing != null)
+                    segment.remove(existing);
+                existing = null;
+            }
+            created = existing == null ? segment.putLoading(objectKey, primitiveKey, primitive, version) : null;
+        } finally {
+            segment.lock.unlock();
+        }
+        if (created == null)
+            return await(existing);
+
+        V value;
+        try {
+            value = loader.load();
+        } catch (SQLException | RuntimeException | Error e) {
+            segment.lock.lock();
+            try {
+                segment.removeIfSame(created);
+            } finally {
+                segment.lock.unlock();
+            }
+            created.future.completeExceptionally(e);
+            throw e;
+        }
+        segment.lock.lock();
+        try {
+            // Entry is not cached if it was removed while loading, when version changed it is cached as stale
+            if (segment.find(objectKey, primitiveKey, primitive) == created)
+                segment.loaded(created, System.nanoTime(), this.weigher == null ? 1 : Math.max(0, this.weigher.applyAsInt(value)));
+        } finally {
+            segment.lock.unlock();
+        }
+        created.future.complete(value);
+        return value;
+    }
+
+    private boolean isExpired(Entry<V> entry, long now) {
+        return this.ttlNanos > 0 && now - entry.loadedAt >= this.ttlNanos;
+    }
+
+    private static <V> V await(Entry<V> entry) throws SQLException {
+        try {
+            return entry.future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for query result of other caller", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException sqlException)
+                throw sqlException;
+            if (cause instanceof RuntimeException runtimeException)
+                throw runtimeException;
+            if (cause instanceof Error error)
+                throw error;
+            throw new SQLException(cause);
+        }
+    }
+
+    /**
+     * Runs query of cached method
+     */
+    @FunctionalInterface
+    public interface Loader<V> {
+        V load() throws SQLException;
+    }
+
+    /**
+     * Key is object or primitive argument, primitive keys are looked up from separate map without boxing
+     */
+    private static final class Entry<V> {
+        private final @Nullable Object objectKey;
+        private final long primitiveKey;
+        private final boolean primitive;
+        private final long version;
+        private final CompletableFuture<V> future = new CompletableFuture<>();
+        private boolean loaded;
+        private long loadedAt;
+        private int weight;
+        // Most recently used is head, only loaded entries are linked
+        private Entry<V> previous;
+        private Entry<V> next;
+
+        private Entry(@Nullable Object objectKey, long primitiveKey, boolean primitive, long version) {
+            this.objectKey = objectKey;
+            this.primitiveKey = primitiveKey;
+            this.primitive = primitive;
+            this.version = version;
+        }
+    }
+
+    private static final class Segment<V> {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final int maxEntries;
+        private final long maxWeight;
+        private final Map<Object, Entry<V>> byObject = new HashMap<>();
+        private final LongObjectMap<Entry<V>> byPrimitive = new LongObjectMap<>();
+        private Entry<V> head;
+        private Entry<V> tail;
+        private int loadedCount;
+        private long weight;
+
+        private Segment(int maxEntries, long maxWeight) {
+            this.maxEntries = maxEntries;
+            this.maxWeight = maxWeight;
+        }
+
+        private @Nullable Entry<V> find(@Nullable Object objectKey, long primitiveKey, boolean primitive) {
+            return primitive ? this.byPrimitive.get(primitiveKey) : this.byObject.get(objectKey);
+        }
+
+        private Entry<V> putLoading(@Nullable Object objectKey, long primitiveKey, boolean primitive, long version) {
+            Entry<V> entry = new Entry<>(objectKey, primitiveKey, primitive, version);
+            if (primitive)
+                this.byPrimitive.put(primitiveKey, entry);
+            else
+                this.byObject.put(objectKey, entry);
+            return entry;
+        }
+
+        private void loaded(Entry<V> entry, long now, int weight) {
+            entry.loaded = true;
+            entry.loadedAt = now;
+            entry.weight = weight;
+            this.loadedCount++;
+            this.weight += weight;
+            this.linkHead(entry);
+            while (this.tail != null && (this.loadedCount > this.maxEntries || this.weight > this.maxWeight))
+                this.remove(this.tail);
+        }
+
+        private void removeIfSame(Entry<V> entry) {
+            if (this.find(entry.objectKey, entry.primitiveKey, entry.primitive) == entry)
+                this.remove(entry);
+        }
+
+        private void remove(Entry<V> entry) {
+            if (entry.primitive)
+                this.byPrimitive.remove(entry.primitiveKey);
+            else
+                this.byObject.remove(entry.objectKey);
+            if (entry.loaded) {
+                this.unlink(entry);
+                this.loadedCount--;
+                this.weight -= entry.weight;
+            }
+        }
+
+        private void moveToHead(Entry<V> entry) {
+            if (this.head == entry)
+                return;
+            this.unlink(entry);
+            this.linkHead(entry);
+        }
+
+        private void linkHead(Entry<V> entry) {
+            entry.previous = null;
+            entry.next = this.head;
+            if (this.head != null)
+                this.head.previous = entry;
+            this.head = entry;
+            if (this.tail == null)
+                this.tail = entry;
+        }
+
+        private void unlink(Entry<V> entry) {
+            if (entry.previous != null)
+                entry.previous.next = entry.next;
+            else
+                this.head = entry.next;
+            if (entry.next != null)
+                entry.next.previous = entry.previous;
+            else
+                this.tail = entry.previous;
+            entry.previous = null;
+            entry.next = null;
+        }
+
+        private void clear() {
+            this.lock.lock();
+            try {
+                this.byObject.clear();
+                this.byPrimitive.clear();
+                this.head = null;
+                this.tail = null;
+                this.loadedCount = 0;
+                this.weight = 0;
+            } finally {
+                this.lock.unlock();
+            }
+        }
+
+        private int size() {
+            this.lock.lock();
+            try {
+                return this.loadedCount;
+            } finally {
+                this.lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package me.gregorsomething.database;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.reflect.Proxy;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Times phases of one statement for {@link SlowQueryLog}, when log is not enabled {@link #NONE} is used,
+ * that does nothing. Values are captured only for slow statements, by running binder again.
+ */
+final class QueryTimer {
+    static final QueryTimer NONE = new QueryTimer(null);
+    private static final int MAX_VALUE_LENGTH = 100;
+
+    private final @Nullable SlowQueryLog log;
+    private final long start;
+    private long acquired;
+    private long prepared;
+    private long executed;
+    private long firstRow;
+    private long mapped;
+    private long ended;
+
+    private QueryTimer(@Nullable SlowQueryLog log) {
+        this.log = log;
+        this.start = log == null ? 0 : System.nanoTime();
+    }
+
+    static QueryTimer start(@Nullable SlowQueryLog log) {
+        return log == null ? NONE : new QueryTimer(log);
+    }
+
+    void acquired() {
+        if (this.log != null)
+            this.acquired = System.nanoTime();
+    }
+
+    void prepared() {
+        if (this.log != null)
+            this.prepared = System.nanoTime();
+    }
+
+    void executed() {
+        if (this.log != null)
+            this.executed = System.nanoTime();
+    }
+
+    /**
+     * @return result set that records when first row is read
+     */
+    ResultSet executed(ResultSet rs) {
+        if (this.log == null)
+            return rs;
+        this.executed();
+        return new TimedResultSet(rs, this);
+    }
+
+    void firstRow() {
+        this.firstRow = System.nanoTime();
+    }
+
+    <T> T mapped(T result) {
+        if (this.log != null)
+            this.mapped = System.nanoTime();
+        return result;
+    }
+
+    /**
+     * Records end of statement, when it is finished later, like after lock is released
+     */
+    void ended() {
+        if (this.log != null)
+            this.ended = System.nanoTime();
+    }
+
+    /**
+     * Logs statement if it was slow, must be called after connection is released
+     * @param binder binder of statement, null for batches, whose values are not logged
+     */
+    void finish(@NotNull SqlStatement statement, @Nullable StatementBinder binder) {
+        if (this.log == null)
+            return;
+        long end = this.ended == 0 ? System.nanoTime() : this.ended;
+        if (!this.log.isSlow(end - this.start))
+            return;
+        // Failed statements end early, missing phases take no time
+        long acquired = Math.max(this.acquired, this.start);
+        long prepared = Math.max(this.prepared, acquired);
+        long executed = Math.max(this.executed, prepared);
+        long firstRow = Math.max(this.firstRow, executed);
+        long mapped = Math.max(this.mapped, firstRow);
+        List<String> values = binder == null ? List.of() : valuesOf(binder, statement.redacted());
+        this.log.offer(new SlowQueryLog.Entry(Instant.now(), statement.origin(), statement.sql(), values,
+                acquired - this.start, prepared - acquired, executed - prepared, firstRow - executed,
+                mapped - firstRow, end - this.start));
+    }
+
+    /**
+     * Runs binder against statement that only records set values
+     */
+    private static List<String> valuesOf(StatementBinder binder, Set<Integer> redacted) {
+        TreeMap<Integer, String> values = new TreeMap<>();
+        PreparedStatement recorder = (PreparedStatement) Proxy.newProxyInstance(QueryTimer.class.getClassLoader(),
+                new Class<?>[]{PreparedStatement.class}, (proxy, method, args) -> {
+                    // Parameter setters, like setInt(index, value) and setNull(index, type)
+                    if (method.getName().startsWith("set") && args != null && args.length >= 2
+                            && args[0] instanceof Integer index) {
+                        values.put(index, redacted.contains(index) ? "<redacted>"
+                                : method.getName().equals("setNull") ? "null" : textOf(args[1]));
+                    }
+                    if (method.getReturnType().isPrimitive() && method.getReturnType() != void.class)
+                        throw new UnsupportedOperationException(method.getName());
+                    return null;
+                });
+        try {
+            binder.bind(recorder);
+        } catch (Exception e) {
+            return List.of("<values not available>");
+        }
+        return new ArrayList<>(values.values());
+    }
+
+    private static String textOf(@Nullable Object value) {
+        if (value == null)
+            return "null";
+        if (value instanceof byte[] bytes)
+            return "<" + bytes.length + " bytes>";
+        String text = value instanceof String ? "'" + value + "'" : value.toString();
+        return text.length() > MAX_VALUE_LENGTH ? text.substring(0, MAX_VALUE_LENGTH) + "..." : text;
+    }
+}
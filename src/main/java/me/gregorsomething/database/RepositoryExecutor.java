@@ -0,0 +1,41 @@
+package me.gregorsomething.database;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Runs async repository methods, every task gets its own virtual thread.
+ * At most max concurrency tasks run at once, others wait for permit on their virtual thread,
+ * so tasks do not queue up on connection pool.
+ */
+public final class RepositoryExecutor implements Executor {
+    private final ThreadFactory threadFactory;
+    private final Semaphore permits;
+
+    /**
+     * @param name prefix for thread names
+     * @param maxConcurrency max count of tasks running at once, usually connection pool size
+     */
+    public RepositoryExecutor(@NotNull String name, int maxConcurrency) {
+        if (maxConcurrency < 1)
+            throw new IllegalArgumentException("Max concurrency must be positive, got " + maxConcurrency);
+        this.threadFactory = Thread.ofVirtual().name(name + "-", 0).factory();
+        this.permits = new Semaphore(maxConcurrency, true);
+    }
+
+    @Override
+    public void execute(@NotNull Runnable task) {
+        this.threadFactory.newThread(() -> {
+            // Waiting virtual thread is unmounted, so it does not hold carrier thread
+            this.permits.acquireUninterruptibly();
+            try {
+                task.run();
+            } finally {
+                this.permits.release();
+            }
+        }).start();
+    }
+}
@@ -0,0 +1,41 @@
+package me.gregorsomething.database;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Receives metrics of repository methods, calls to it are generated only when processor option
+ * {@code gsdb.metrics} is {@code true}, so repositories without it have no overhead.
+ * Implementation is found with {@link java.util.ServiceLoader}, when there is none
+ * {@link DefaultRepositoryMetrics} is used, that keeps histograms in memory and publishes them through JMX.
+ */
+public interface RepositoryMetrics {
+
+    /**
+     * Called once for every method, when repository implementation class is loaded
+     * @param method method name as {@code com.example.Repository#method}, with qualified name of repository, overloads have same name
+     * @return recorder that is called after every call of method, from many threads at once
+     */
+    @NotNull Recorder recorder(@NotNull String method);
+
+    /**
+     * @return metrics implementation repositories use
+     */
+    static RepositoryMetrics provider() {
+        return RepositoryMetricsLoader.PROVIDER;
+    }
+
+    interface Recorder {
+
+        /**
+         * @param nanos time method took, for async methods until future completed
+         * @param rows count of rows in result, -1 when it is not known, like for statements and streams
+         */
+        void success(long nanos, long rows);
+
+        /**
+         * @param nanos time method took until it failed
+         * @param error exception method threw, SQLException is often cause of it
+         */
+        void failure(long nanos, @NotNull Throwable error);
+    }
+}
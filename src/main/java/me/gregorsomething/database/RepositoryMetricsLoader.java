@@ -0,0 +1,14 @@
+package me.gregorsomething.database;
+
+import java.util.ServiceLoader;
+
+/**
+ * Loads metrics implementation when first repository with metrics is loaded
+ */
+final class RepositoryMetricsLoader {
+    static final RepositoryMetrics PROVIDER = ServiceLoader.load(RepositoryMetrics.class)
+            .findFirst()
+            .orElseGet(DefaultRepositoryMetrics::new);
+
+    private RepositoryMetricsLoader() {}
+}
@@ -12,10 +12,14 @@ public final class RepositoryProvider {
 
     public static <T> T create(@NotNull Class<T> clazz, @NotNull Database database) {
         try {
-            Constructor<?>[] constructors = clazz.getClassLoader().loadClass(clazz.getName() + IMPLEMENTATION_SUFFIX).getDeclaredConstructors();
-            if (constructors.length != 1)
-                throw new RepositoryCreationException("Class probably is not repository: " + clazz.getName());
-            return (T) constructors[0].newInstance(database);
+            // Transactional repositories also have private constructor for transactional views
+            Constructor<?> constructor;
+            try {
+                constructor = implementationOf(clazz).getConstructor(Database.class);
+            } catch (NoSuchMethodException e) {
+                throw new RepositoryCreationException("Class probably is not repository: " + clazz.getName(), e);
+            }
+            return (T) constructor.newInstance(database);
         } catch (ClassNotFoundException | IllegalAccessException | InstantiationException e) {
             throw new RepositoryCreationException("Repository implementation class file not found or was wrong!", e);
         } catch (InvocationTargetException e) {
@@ -23,6 +27,13 @@ public final class RepositoryProvider {
         }
     }
 
+    /**
+     * @return generated implementation class of repository interface
+     */
+    static Class<?> implementationOf(Class<?> repository) throws ClassNotFoundException {
+        return repository.getClassLoader().loadClass(repository.getName() + IMPLEMENTATION_SUFFIX);
+    }
+
     public static class RepositoryCreationException extends RuntimeException {
         public RepositoryCreationException(String message, Throwable cause) {
             super(message, cause);
@@ -0,0 +1,18 @@
+package me.gregorsomething.database;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Reads whole result of query, result set is positioned before first row
+ * and it is closed after handler returns
+ * @param <T> result type
+ */
+@FunctionalInterface
+public interface ResultSetHandler<T> {
+
+    @Nullable T handle(@NotNull ResultSet rs) throws SQLException;
+}
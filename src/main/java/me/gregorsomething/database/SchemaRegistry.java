@@ -0,0 +1,171 @@
+package me.gregorsomething.database;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Runs schema statements of {@link me.gregorsomething.database.annotations.Repository} once per database,
+ * so making repository again, like for every transaction, does not send them again.
+ * Repositories can be initialized at startup with {@link #warmUp(Class[])}, that sends statements of all
+ * repositories on one connection in one batch.
+ */
+public final class SchemaRegistry {
+    /**
+     * Static field of generated repository implementation that holds its schema statements
+     */
+    public static final String SCHEMA_FIELD = "SCHEMA";
+
+    private final Database database;
+    // Completed when statements of repository have been run, failed initializations are removed, so they are retried
+    private final Map<String, CompletableFuture<Void>> initialized = new ConcurrentHashMap<>();
+
+    public SchemaRegistry(@NotNull Database database) {
+        this.database = database;
+    }
+
+    /**
+     * Runs schema statements of repository if they have not been run on this database,
+     * when other thread is running them, waits for it
+     * @param repository name of repository interface
+     * @param statements statements that can be run many times
+     */
+    public void initialize(@NotNull String repository, @NotNull String[] statements) throws SQLException {
+        while (true) {
+            CompletableFuture<Void> done = this.initialized.get(repository);
+            if (done != null) {
+                await(done);
+                return;
+            }
+            Map<String, String[]> claimed = this.claim(Map.of(repository, statements));
+            if (!claimed.isEmpty()) {
+                this.run(claimed);
+                return;
+            }
+            // Other thread claimed it, or its initialization failed and it was removed meanwhile
+        }
+    }
+
+    /**
+     * Runs schema statements of repositories that are not initialized yet, on one connection in one batch
+     * @param repositories repository interfaces
+     */
+    public void warmUp(@NotNull Class<?>... repositories) throws SQLException {
+        Map<String, String[]> statements = new LinkedHashMap<>();
+        for (Class<?> repository : repositories)
+            statements.put(repository.getName(), schemaOf(repository));
+        Map<String, String[]> claimed = this.claim(statements);
+        if (!claimed.isEmpty())
+            this.run(claimed);
+        // Repositories initialized by other threads meanwhile
+        for (String repository : statements.keySet()) {
+            CompletableFuture<Void> done = this.initialized.get(repository);
+            if (done != null)
+                await(done);
+        }
+    }
+
+    /**
+     * Same as {@link #warmUp(Class[])}, but runs on virtual thread, repositories made meanwhile wait for it
+     * @return future that completes when all repositories are initialized, SQLException fails it
+     */
+    public CompletableFuture<Void> warmUpAsync(@NotNull Class<?>... repositories) {
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        Thread.ofVirtual().name("schema-warm-up").start(() -> {
+            try {
+                this.warmUp(repositories);
+                result.complete(null);
+            } catch (SQLException | RuntimeException e) {
+                result.completeExceptionally(e);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * @return true if statements of repository have been run on this database
+     */
+    public boolean isInitialized(@NotNull Class<?> repository) {
+        CompletableFuture<Void> done = this.initialized.get(repository.getName());
+        return done != null && done.isDone() && !done.isCompletedExceptionally();
+    }
+
+    /**
+     * @return repositories this thread must initialize, others are initialized or being initialized by other threads
+     */
+    private Map<String, String[]> claim(Map<String, String[]> statements) {
+        Map<String, String[]> claimed = new LinkedHashMap<>();
+        for (Map.Entry<String, String[]> entry : statements.entrySet()) {
+            if (this.initialized.putIfAbsent(entry.getKey(), new CompletableFuture<>()) == null)
+                claimed.put(entry.getKey(), entry.getValue());
+        }
+        return claimed;
+    }
+
+    private void run(Map<String, String[]> claimed) throws SQLException {
+        List<String> statements = new ArrayList<>();
+        claimed.values().forEach(s -> statements.addAll(List.of(s)));
+        try {
+            if (!statements.isEmpty())
+                this.executeBatch(statements);
+        } catch (SQLException | RuntimeException e) {
+            for (String repository : claimed.keySet())
+                this.initialized.remove(repository).completeExceptionally(e);
+            throw e;
+        }
+        for (String repository : claimed.keySet())
+            this.initialized.get(repository).complete(null);
+    }
+
+    /**
+     * Connection of transaction must not be closed, so its statements are sent one by one
+     */
+    private void executeBatch(List<String> statements) throws SQLException {
+        if (statements.size() == 1 || this.database instanceof TransactionalDatabase) {
+            for (String sql : statements)
+                this.database.execute(sql);
+            return;
+        }
+        try (Connection connection = this.database.getConnection();
+             Statement statement = connection.createStatement()) {
+            for (String sql : statements)
+                statement.addBatch(sql);
+            statement.executeBatch();
+        }
+    }
+
+    private static String[] schemaOf(Class<?> repository) {
+        try {
+            Class<?> implementation = RepositoryProvider.implementationOf(repository);
+            return (String[]) implementation.getField(SCHEMA_FIELD).get(null);
+        } catch (NoSuchFieldException e) {
+            // Repository has no schema statements
+            return new String[0];
+        } catch (ClassNotFoundException | IllegalAccessException e) {
+            throw new RepositoryProvider.RepositoryCreationException("Repository implementation class file not found or was wrong!", e);
+        }
+    }
+
+    private static void await(CompletableFuture<Void> done) throws SQLException {
+        try {
+            done.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for schema statements", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SQLException sqlException)
+                throw sqlException;
+            throw new CompletionException(e.getCause());
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package me.gregorsomething.database;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Opt-in log of repository statements that took at least threshold, enabled with
+ * {@link PooledDatabase#setSlowQueryLog(SlowQueryLog)} or {@link DataSourceDatabase#setSlowQueryLog(SlowQueryLog)}.
+ * Query threads only put entries to bounded ring buffer, that is written by own thread.
+ * When buffer is full entries are dropped, so logging never blocks queries.
+ */
+public final class SlowQueryLog implements AutoCloseable {
+    public static final int DEFAULT_CAPACITY = 1024;
+    private static final System.Logger LOGGER = System.getLogger(SlowQueryLog.class.getName());
+
+    private final long thresholdNanos;
+    private final Consumer<Entry> writer;
+    private final AtomicReferenceArray<Entry> buffer;
+    private final int mask;
+    // Next slot to claim and next slot to write, tail - head is count of entries in buffer
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong head = new AtomicLong();
+    private final LongAdder dropped = new LongAdder();
+    private final Thread writerThread;
+    private volatile boolean closed;
+
+    /**
+     * Writes entries to {@link System.Logger} at warning level
+     * @param threshold min time of statement that is logged
+     */
+    public SlowQueryLog(@NotNull Duration threshold) {
+        this(threshold, DEFAULT_CAPACITY, entry -> LOGGER.log(System.Logger.Level.WARNING, entry.toString()));
+    }
+
+    /**
+     * @param threshold min time of statement that is logged
+     * @param capacity max count of entries waiting for writer, rounded up to power of two
+     * @param writer writes entries, called only from writer thread
+     */
+    public SlowQueryLog(@NotNull Duration threshold, int capacity, @NotNull Consumer<Entry> writer) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("Capacity must be positive");
+        this.thresholdNanos = threshold.toNanos();
+        this.writer = writer;
+        int size = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        this.buffer = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+        this.writerThread = Thread.ofVirtual().name("slow-query-log").start(this::writeLoop);
+    }
+
+    public Duration getThreshold() {
+        return Duration.ofNanos(this.thresholdNanos);
+    }
+
+    /**
+     * @return count of entries dropped, as buffer was full or log was closed
+     */
+    public long getDropped() {
+        return this.dropped.sum();
+    }
+
+    boolean isSlow(long nanos) {
+        return nanos >= this.thresholdNanos;
+    }
+
+    /**
+     * Puts entry to buffer without waiting
+     * @return false if entry was dropped
+     */
+    boolean offer(@NotNull Entry entry) {
+        long claimed;
+        do {
+            claimed = this.tail.get();
+            if (this.closed || claimed - this.head.get() > this.mask) {
+                this.dropped.increment();
+                return false;
+            }
+        } while (!this.tail.compareAndSet(claimed, claimed + 1));
+        this.buffer.set((int) claimed & this.mask, entry);
+        LockSupport.unpark(this.writerThread);
+        return true;
+    }
+
+    /**
+     * Writes entries that are in buffer and stops writer thread
+     */
+    @Override
+    public void close() {
+        this.closed = true;
+        LockSupport.unpark(this.writerThread);
+        try {
+            this.writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void writeLoop() {
+        while (!this.closed) {
+            this.drain();
+            LockSupport.park(this);
+        }
+        this.drain();
+    }
+
+    private void drain() {
+        long next = this.head.get();
+        while (next < this.tail.get()) {
+            int slot = (int) next & this.mask;
+            Entry entry = this.buffer.get(slot);
+            if (entry == null) {
+                // Slot is claimed, but entry is not stored yet
+                Thread.onSpinWait();
+                continue;
+            }
+            this.buffer.set(slot, null);
+            this.head.set(++next);
+            try {
+                this.writer.accept(entry);
+            } catch (RuntimeException ignored) {
+                // Failing writer must not stop logging of next entries
+            }
+        }
+    }
+
+    /**
+     * One slow statement, times are in nanoseconds
+     * @param origin repository method, as {@code com.example.Repository#method}, null if not known
+     * @param values bound values as text, redacted values are {@code <redacted>}, empty for batches
+     * @param acquireNanos time to get connection
+     * @param prepareNanos time to prepare statement, or get it from cache
+     * @param executeNanos time to bind values and execute statement
+     * @param firstRowNanos time to get first row after execution, 0 for statements
+     * @param mappingNanos time to map result after first row, 0 for statements
+     * @param totalNanos time from start until connection was released
+     */
+    public record Entry(@NotNull Instant time, @Nullable String origin, @NotNull String sql, @NotNull List<String> values,
+                        long acquireNanos, long prepareNanos, long executeNanos, long firstRowNanos, long mappingNanos,
+                        long totalNanos) {
+
+        @Override
+        public String toString() {
+            return "Slow statement " + (this.origin == null ? "" : this.origin + " ")
+                    + "took " + millis(this.totalNanos)
+                    + " (acquire " + millis(this.acquireNanos)
+                    + ", prepare " + millis(this.prepareNanos)
+                    + ", execute " + millis(this.executeNanos)
+                    + ", first row " + millis(this.firstRowNanos)
+                    + ", mapping " + millis(this.mappingNanos)
+                    + "): " + this.sql + (this.values.isEmpty() ? "" : " " + this.values);
+        }
+
+        private static String millis(long nanos) {
+            return String.format("%.3f ms", nanos / 1_000_000.0);
+        }
+    }
+}
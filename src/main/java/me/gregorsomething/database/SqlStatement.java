@@ -0,0 +1,65 @@
+package me.gregorsomething.database;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * SQL statement known at compile time, with id that is unique and dense in this JVM,
+ * so statement caches can index arrays with it instead of hashing SQL text.
+ * @param id index of this statement
+ * @param sql statement with ? placeholders
+ * @param origin repository method that uses statement, as {@code com.example.Repository#method}, null if not known
+ * @param redacted indexes of placeholders, starting from 1, whose values must not be logged
+ */
+public record SqlStatement(int id, @NotNull String sql, @Nullable String origin, @NotNull Set<Integer> redacted) {
+    private static final AtomicInteger NEXT_ID = new AtomicInteger();
+
+    public SqlStatement(int id, @NotNull String sql) {
+        this(id, sql, null, Set.of());
+    }
+
+    /**
+     * Registers statements of one repository, ids are given in one continuous range
+     * @param sql statements in order of their repository local ids
+     * @return statements where array index is local id
+     */
+    public static SqlStatement[] register(String... sql) {
+        return register(Arrays.stream(sql)
+                .map(s -> new Declaration(s, null, Set.of()))
+                .toArray(Declaration[]::new));
+    }
+
+    /**
+     * Same as {@link #register(String...)}, but statements know where they are used
+     * @param declarations statements in order of their repository local ids
+     * @return statements where array index is local id
+     */
+    public static SqlStatement[] register(Declaration... declarations) {
+        int first = NEXT_ID.getAndAdd(declarations.length);
+        SqlStatement[] statements = new SqlStatement[declarations.length];
+        for (int i = 0; i < declarations.length; i++) {
+            Declaration declaration = declarations[i];
+            statements[i] = new SqlStatement(first + i, declaration.sql(), declaration.origin(), declaration.redacted());
+        }
+        return statements;
+    }
+
+    /**
+     * @param sql statement with ? placeholders
+     * @param origin repository method that uses statement, as {@code com.example.Repository#method}
+     * @param redacted indexes of placeholders, starting from 1, whose values must not be logged
+     */
+    public static Declaration declare(@NotNull String sql, @NotNull String origin, int... redacted) {
+        return new Declaration(sql, origin, Arrays.stream(redacted).boxed().collect(Collectors.toUnmodifiableSet()));
+    }
+
+    /**
+     * Statement before it has id
+     */
+    public record Declaration(@NotNull String sql, @Nullable String origin, @NotNull Set<Integer> redacted) {}
+}
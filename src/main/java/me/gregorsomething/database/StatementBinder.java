@@ -0,0 +1,34 @@
+package me.gregorsomething.database;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Sets parameters, and optionally other settings, of prepared statement before it is executed
+ */
+@FunctionalInterface
+public interface StatementBinder {
+    /**
+     * Binder for statements without parameters
+     */
+    StatementBinder NONE = statement -> {};
+
+    void bind(@NotNull PreparedStatement statement) throws SQLException;
+
+    /**
+     * Makes binder that sets values with {@link PreparedStatement#setObject(int, Object)}
+     * @param values values in order of their placeholders
+     * @return binder for values
+     */
+    static StatementBinder ofValues(Object... values) {
+        if (values.length == 0)
+            return NONE;
+        return statement -> {
+            for (int i = 1; i <= values.length; i++) {
+                statement.setObject(i, values[i - 1]);
+            }
+        };
+    }
+}
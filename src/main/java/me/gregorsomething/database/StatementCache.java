@@ -0,0 +1,180 @@
+package me.gregorsomething.database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Least recently used cache of prepared statements for one physical connection.
+ * Statements with compile time id are looked up from array, others by SQL text.
+ * Not thread safe, connection is used by one thread at a time.
+ */
+class StatementCache {
+    private static final int NO_ID = -1;
+
+    private final int capacity;
+    private final StatementCacheCounters counters;
+    private final Map<String, Entry> bySql = new HashMap<>();
+    private Entry[] byId = new Entry[0];
+    private int size;
+    // Most recently used is head
+    private Entry head;
+    private Entry tail;
+
+    StatementCache(int capacity, StatementCacheCounters counters) {
+        this.capacity = capacity;
+        this.counters = counters;
+    }
+
+    /**
+     * Gives cached statement or prepares new one, returned statement must be given back with
+     * {@link #release(PreparedStatement)} instead of closing it
+     * @param connection connection this cache belongs to
+     * @param sql statement
+     * @return prepared statement
+     */
+    PreparedStatement prepare(Connection connection, String sql) throws SQLException {
+        if (this.capacity <= 0)
+            return connection.prepareStatement(sql);
+        Entry entry = this.bySql.get(sql);
+        if (entry != null) {
+            this.counters.hit();
+            this.moveToHead(entry);
+            return entry.statement;
+        }
+        entry = this.addNew(connection, sql, NO_ID);
+        this.bySql.put(sql, entry);
+        return entry.statement;
+    }
+
+    /**
+     * Same as {@link #prepare(Connection, String)}, but looks statement up by its id
+     */
+    PreparedStatement prepare(Connection connection, SqlStatement statement) throws SQLException {
+        if (this.capacity <= 0)
+            return connection.prepareStatement(statement.sql());
+        int id = statement.id();
+        Entry entry = id < this.byId.length ? this.byId[id] : null;
+        if (entry != null) {
+            this.counters.hit();
+            this.moveToHead(entry);
+            return entry.statement;
+        }
+        entry = this.addNew(connection, statement.sql(), id);
+        if (id >= this.byId.length)
+            this.byId = Arrays.copyOf(this.byId, Math.max(id + 1, this.byId.length * 2));
+        this.byId[id] = entry;
+        return entry.statement;
+    }
+
+    private Entry addNew(Connection connection, String sql, int id) throws SQLException {
+        this.counters.miss();
+        if (this.size >= this.capacity)
+            this.evict(this.tail);
+        Entry entry = new Entry(sql, id, connection.prepareStatement(sql));
+        this.addToHead(entry);
+        this.size++;
+        return entry;
+    }
+
+    /**
+     * Gives statement back after use, closes it if caching is disabled
+     */
+    void release(PreparedStatement statement) throws SQLException {
+        if (this.capacity <= 0)
+            statement.close();
+    }
+
+    /**
+     * Removes statement from cache, used when it failed and might be in unusable state
+     */
+    void invalidate(String sql) {
+        Entry entry = this.bySql.get(sql);
+        if (entry != null)
+            this.remove(entry);
+    }
+
+    void invalidate(SqlStatement statement) {
+        if (statement.id() < this.byId.length && this.byId[statement.id()] != null)
+            this.remove(this.byId[statement.id()]);
+    }
+
+    StatementCacheCounters getCounters() {
+        return this.counters;
+    }
+
+    /**
+     * Closes all cached statements
+     */
+    void close() {
+        while (this.head != null) {
+            this.remove(this.head);
+        }
+    }
+
+    private void evict(Entry entry) {
+        this.remove(entry);
+        this.counters.eviction();
+    }
+
+    private void remove(Entry entry) {
+        if (entry.id == NO_ID)
+            this.bySql.remove(entry.sql);
+        else
+            this.byId[entry.id] = null;
+        this.unlink(entry);
+        this.size--;
+        try {
+            entry.statement.close();
+        } catch (SQLException ignored) {
+            // Statement is dropped anyway
+        }
+    }
+
+    private void moveToHead(Entry entry) {
+        if (entry == this.head)
+            return;
+        this.unlink(entry);
+        this.addToHead(entry);
+    }
+
+    private void addToHead(Entry entry) {
+        entry.next = this.head;
+        entry.previous = null;
+        if (this.head != null)
+            this.head.previous = entry;
+        this.head = entry;
+        if (this.tail == null)
+            this.tail = entry;
+    }
+
+    private void unlink(Entry entry) {
+        if (entry.previous != null)
+            entry.previous.next = entry.next;
+        else
+            this.head = entry.next;
+        if (entry.next != null)
+            entry.next.previous = entry.previous;
+        else
+            this.tail = entry.previous;
+        entry.previous = null;
+        entry.next = null;
+    }
+
+    private static final class Entry {
+        private final String sql;
+        private final int id;
+        private final PreparedStatement statement;
+        private Entry previous;
+        private Entry next;
+
+        private Entry(String sql, int id, PreparedStatement statement) {
+            this.sql = sql;
+            this.id = id;
+            this.statement = statement;
+        }
+    }
+}
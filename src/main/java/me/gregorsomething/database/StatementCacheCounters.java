@@ -0,0 +1,28 @@
+package me.gregorsomething.database;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters shared by statement caches of one pool
+ */
+class StatementCacheCounters {
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    void hit() {
+        this.hits.increment();
+    }
+
+    void miss() {
+        this.misses.increment();
+    }
+
+    void eviction() {
+        this.evictions.increment();
+    }
+
+    StatementCacheStats snapshot() {
+        return new StatementCacheStats(this.hits.sum(), this.misses.sum(), this.evictions.sum());
+    }
+}
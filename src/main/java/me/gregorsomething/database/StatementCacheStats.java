@@ -0,0 +1,19 @@
+package me.gregorsomething.database;
+
+/**
+ * Snapshot of prepared statement cache counters
+ * @param hits times cached statement was reused
+ * @param misses times statement had to be prepared
+ * @param evictions times statement was closed to make room for other
+ */
+public record StatementCacheStats(long hits, long misses, long evictions) {
+    public static final StatementCacheStats EMPTY = new StatementCacheStats(0, 0, 0);
+
+    /**
+     * @return share of lookups that were hits, 0 if there has been no lookups
+     */
+    public double hitRate() {
+        long total = this.hits + this.misses;
+        return total == 0 ? 0 : (double) this.hits / total;
+    }
+}
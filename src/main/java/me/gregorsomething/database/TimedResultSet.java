@@ -0,0 +1,38 @@
+package me.gregorsomething.database;
+
+import lombok.experimental.Delegate;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * ResultSet that tells {@link QueryTimer} when first row is read, used only when slow query log is enabled
+ */
+class TimedResultSet implements ResultSet {
+    @Delegate(excludes = Timed.class)
+    private final ResultSet resultSet;
+    private final QueryTimer timer;
+    private boolean read;
+
+    TimedResultSet(ResultSet resultSet, QueryTimer timer) {
+        this.resultSet = resultSet;
+        this.timer = timer;
+    }
+
+    @Override
+    public boolean next() throws SQLException {
+        boolean hasRow = this.resultSet.next();
+        if (!this.read) {
+            this.read = true;
+            this.timer.firstRow();
+        }
+        return hasRow;
+    }
+
+    /**
+     * Methods that are not delegated to wrapped result set
+     */
+    private interface Timed {
+        boolean next() throws SQLException;
+    }
+}
@@ -1,31 +1,166 @@
 package me.gregorsomething.database;
 
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
+/**
+ * Transaction on one connection, closing it rolls back changes that are not committed
+ * and gives connection back, pooled connections are returned to pool with their settings reset.
+ */
 public class Transaction implements AutoCloseable {
     private final TransactionalDatabase database;
     private final Connection connection;
+    // Settings of connection that is not pooled, restored on close, as connection can be from other pool
+    private int previousIsolation = -1;
+    private boolean madeReadOnly;
+    // Caches of data changed in transaction, other connections see changes only after commit
+    private final Set<QueryCache<?>> invalidatedCaches = new HashSet<>();
 
     public Transaction(Connection connection) throws SQLException {
+        this(connection, Isolation.DEFAULT, false);
+    }
+
+    /**
+     * @param connection connection that is used only by this transaction, it is closed with transaction
+     * @param isolation isolation level of transaction
+     * @param readOnly if transaction only reads, database can optimize it and rejects writes
+     */
+    public Transaction(Connection connection, @NotNull Isolation isolation, boolean readOnly) throws SQLException {
+        this(connection, isolation, readOnly, null);
+    }
+
+    /**
+     * Same as {@link #Transaction(Connection, Isolation, boolean)}, statements of transaction are logged to slowQueryLog
+     */
+    public Transaction(Connection connection, @NotNull Isolation isolation, boolean readOnly,
+                       @Nullable SlowQueryLog slowQueryLog) throws SQLException {
         this.connection = connection;
-        this.database = new TransactionalDatabase(connection);
+        try {
+            this.configure(isolation, readOnly);
+            this.database = new TransactionalDatabase(connection, slowQueryLog);
+        } catch (SQLException | RuntimeException e) {
+            this.closeConnection();
+            throw e;
+        }
     }
 
     public void commit() throws SQLException {
         this.connection.commit();
+        for (QueryCache<?> cache : this.takeInvalidatedCaches())
+            cache.invalidate();
     }
 
     public void rollback() throws SQLException {
+        this.takeInvalidatedCaches();
         this.connection.rollback();
     }
 
+    /**
+     * Cache is invalidated when transaction is committed, nothing is done on rollback
+     */
+    public void invalidateOnCommit(QueryCache<?> cache) {
+        // Async repository methods can run statements of same transaction on other threads
+        synchronized (this.invalidatedCaches) {
+            this.invalidatedCaches.add(cache);
+        }
+    }
+
     @Override
     public void close() {
-        this.database.close();
+        this.takeInvalidatedCaches();
+        this.database.closeStatementCache();
+        this.closeConnection();
     }
 
     public Database getTransactionalDatabase() {
         return this.database;
     }
+
+    /**
+     * Settings are changed before transaction starts, as most drivers do not allow changing them in transaction
+     */
+    private void configure(Isolation isolation, boolean readOnly) throws SQLException {
+        if (this.connection instanceof PooledConnection pooled) {
+            if (isolation != Isolation.DEFAULT)
+                pooled.getEntry().changeIsolation(isolation.getLevel());
+            if (readOnly)
+                pooled.getEntry().changeToReadOnly();
+            return;
+        }
+        if (isolation != Isolation.DEFAULT) {
+            this.previousIsolation = this.connection.getTransactionIsolation();
+            this.connection.setTransactionIsolation(isolation.getLevel());
+        }
+        if (readOnly) {
+            this.connection.setReadOnly(true);
+            this.madeReadOnly = true;
+        }
+    }
+
+    /**
+     * Pool resets pooled connection itself, other connections are reset before closing
+     */
+    private void closeConnection() {
+        try {
+            if (this.connection.isClosed())
+                return;
+            if (!(this.connection instanceof PooledConnection)) {
+                if (!this.connection.getAutoCommit()) {
+                    this.connection.rollback();
+                    this.connection.setAutoCommit(true);
+                }
+                if (this.previousIsolation != -1)
+                    this.connection.setTransactionIsolation(this.previousIsolation);
+                if (this.madeReadOnly)
+                    this.connection.setReadOnly(false);
+            }
+        } catch (SQLException ignored) {
+            // Connection is closed anyway, driver or pool discards broken connection
+        } finally {
+            try {
+                this.connection.close();
+            } catch (SQLException ignored) {
+                // Nothing more can be done with connection
+            }
+        }
+    }
+
+    private List<QueryCache<?>> takeInvalidatedCaches() {
+        synchronized (this.invalidatedCaches) {
+            List<QueryCache<?>> caches = new ArrayList<>(this.invalidatedCaches);
+            this.invalidatedCaches.clear();
+            return caches;
+        }
+    }
+
+    /**
+     * Isolation level of transaction, {@link #DEFAULT} keeps level connection has
+     */
+    public enum Isolation {
+        DEFAULT(-1),
+        READ_UNCOMMITTED(Connection.TRANSACTION_READ_UNCOMMITTED),
+        READ_COMMITTED(Connection.TRANSACTION_READ_COMMITTED),
+        REPEATABLE_READ(Connection.TRANSACTION_REPEATABLE_READ),
+        SERIALIZABLE(Connection.TRANSACTION_SERIALIZABLE);
+
+        private final int level;
+
+        Isolation(int level) {
+            this.level = level;
+        }
+
+        /**
+         * @return JDBC isolation level constant, -1 for {@link #DEFAULT}
+         */
+        public int getLevel() {
+            return this.level;
+        }
+    }
 }
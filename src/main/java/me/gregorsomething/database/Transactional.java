@@ -8,28 +8,69 @@ import java.sql.SQLException;
  */
 public interface Transactional<T> {
 
-    default boolean inTransaction(TransactionBlock<T> action) {
-        try (Transaction transaction = this.getNewTransaction()) {
+    /**
+     * Runs action in transaction and commits it, on failure transaction is rolled back
+     * @throws TransactionException with SQLException as cause if action or commit failed,
+     * runtime exceptions of action are thrown as they are
+     */
+    default void inTransaction(TransactionBlock<T> action) {
+        this.inTransaction(Transaction.Isolation.DEFAULT, false, action);
+    }
+
+    /**
+     * Same as {@link #inTransaction(TransactionBlock)}, with isolation level and read only flag of transaction
+     */
+    default void inTransaction(Transaction.Isolation isolation, boolean readOnly, TransactionBlock<T> action) {
+        try (Transaction transaction = this.getNewTransaction(isolation, readOnly)) {
             try {
                 this.inTransaction(transaction, action);
                 transaction.commit();
-                return true; // success
-            } catch (SQLException ignored) {
-                transaction.rollback();
+            } catch (SQLException | RuntimeException e) {
+                try {
+                    transaction.rollback();
+                } catch (SQLException rollbackException) {
+                    e.addSuppressed(rollbackException);
+                }
+                throw e;
             }
-        } catch (SQLException ignored) {}
-        return false; // fail
+        } catch (SQLException e) {
+            throw new TransactionException("Transaction failed and was rolled back", e);
+        }
     }
 
+    /**
+     * Makes view of repository that uses connection of transaction, view shares caches with repository
+     * and does not run schema statements again, so it is cheap to make for every transaction
+     */
     T asTransactional(Transaction transaction);
 
     default void inTransaction(Transaction transaction, TransactionBlock<T> action) throws SQLException {
         action.runInTransaction(this.asTransactional(transaction));
     }
 
-    Transaction getNewTransaction();
+    /**
+     * Borrows connection for transaction, it is returned when transaction is closed
+     */
+    default Transaction getNewTransaction() {
+        return this.getNewTransaction(Transaction.Isolation.DEFAULT, false);
+    }
+
+    /**
+     * @param isolation isolation level of transaction
+     * @param readOnly if transaction only reads data
+     */
+    Transaction getNewTransaction(Transaction.Isolation isolation, boolean readOnly);
 
     interface TransactionBlock<T> {
         void runInTransaction(T transaction) throws SQLException;
     }
+
+    /**
+     * Thrown by {@link #inTransaction(TransactionBlock)} when transaction failed with SQLException
+     */
+    class TransactionException extends RuntimeException {
+        public TransactionException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
 }
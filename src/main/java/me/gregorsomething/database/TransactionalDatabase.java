@@ -1,39 +1,215 @@
 package me.gregorsomething.database;
 
+import lombok.Getter;
 import lombok.SneakyThrows;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.sql.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.locks.ReentrantLock;
 
+/**
+ * Database of one transaction, statements of sync and async repository methods and of all views
+ * that use same transaction run one at a time, as connection and its statement cache are not thread safe.
+ * Rows of cursors are read after lock is released, so cursor must not be read while other statements run.
+ */
 public class TransactionalDatabase implements Database {
     private final Connection connection;
+    // Lock does not pin virtual threads of executor, unlike synchronized
+    private final ReentrantLock lock = new ReentrantLock();
+    /**
+     * Runs async methods of transaction one at a time, made on first use as most transactions are not async
+     */
+    @Getter(lazy = true)
+    private final Executor executor = new RepositoryExecutor("transaction", 1);
+    /**
+     * Used only by repositories made directly on transaction, its views do not run schema statements
+     */
+    @Getter(lazy = true)
+    private final SchemaRegistry schemaRegistry = new SchemaRegistry(this);
+    private final StatementCache statementCache;
+    private final boolean ownsStatementCache;
+    private final @Nullable SlowQueryLog slowQueryLog;
 
     public TransactionalDatabase(@NotNull Connection connection) throws SQLException {
+        this(connection, null);
+    }
+
+    /**
+     * @param slowQueryLog log of slow statements, usually same as database of connection has
+     */
+    public TransactionalDatabase(@NotNull Connection connection, @Nullable SlowQueryLog slowQueryLog) throws SQLException {
         this.connection = connection;
+        this.slowQueryLog = slowQueryLog;
+        // Pooled connections already have statement cache that outlives this transaction
+        if (connection instanceof PooledConnection pooled) {
+            this.statementCache = pooled.getEntry().getStatementCache();
+            this.ownsStatementCache = false;
+        } else {
+            this.statementCache = new StatementCache(ConnectionPool.DEFAULT_STATEMENT_CACHE_SIZE, new StatementCacheCounters());
+            this.ownsStatementCache = true;
+        }
         this.connection.setAutoCommit(false);
     }
 
     @Override
     public ResultSet query(String query, Object... values) throws SQLException {
-        PreparedStatement statement = connection.prepareStatement(query);
+        this.lock.lock();
         try {
-            for (int i = 1; i <= values.length; i++) {
-                statement.setObject(i, values[i - 1]);
+            PreparedStatement statement = connection.prepareStatement(query);
+            try {
+                for (int i = 1; i <= values.length; i++) {
+                    statement.setObject(i, values[i - 1]);
+                }
+                return statement.executeQuery();
+
+            } finally {
+                statement.closeOnCompletion();
             }
-            return statement.executeQuery();
+        } finally {
+            this.lock.unlock();
+        }
+    }
 
+    @Override
+    public <T> T query(String query, ResultSetHandler<T> handler, Object... values) throws SQLException {
+        this.lock.lock();
+        try {
+            PreparedStatement statement = this.statementCache.prepare(this.connection, query);
+            try {
+                for (int i = 1; i <= values.length; i++) {
+                    statement.setObject(i, values[i - 1]);
+                }
+                try (ResultSet rs = statement.executeQuery()) {
+                    return handler.handle(rs);
+                }
+            } catch (SQLException e) {
+                this.statementCache.invalidate(query);
+                throw e;
+            } finally {
+                this.statementCache.release(statement);
+            }
         } finally {
-            statement.closeOnCompletion();
+            this.lock.unlock();
         }
     }
 
     @Override
     public void execute(String query, Object... values) throws SQLException {
-        try (PreparedStatement statement = connection.prepareStatement(query)) {
-            for (int i = 1; i <= values.length; i++) {
-                statement.setObject(i, values[i - 1]);
+        this.lock.lock();
+        try {
+            PreparedStatement statement = this.statementCache.prepare(this.connection, query);
+            try {
+                for (int i = 1; i <= values.length; i++) {
+                    statement.setObject(i, values[i - 1]);
+                }
+                statement.execute();
+            } catch (SQLException e) {
+                this.statementCache.invalidate(query);
+                throw e;
+            } finally {
+                this.statementCache.release(statement);
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    @Override
+    public <T> T query(SqlStatement query, StatementBinder binder, ResultSetHandler<T> handler) throws SQLException {
+        QueryTimer timer = QueryTimer.start(this.slowQueryLog);
+        this.lock.lock();
+        try {
+            timer.acquired();
+            PreparedStatement statement = this.statementCache.prepare(this.connection, query);
+            timer.prepared();
+            try {
+                binder.bind(statement);
+                try (ResultSet rs = timer.executed(statement.executeQuery())) {
+                    return timer.mapped(handler.handle(rs));
+                }
+            } catch (SQLException e) {
+                this.statementCache.invalidate(query);
+                throw e;
+            } finally {
+                this.statementCache.release(statement);
             }
-            statement.execute();
+        } finally {
+            timer.ended();
+            this.lock.unlock();
+            // Slow statement is logged after other statements of transaction can run
+            timer.finish(query, binder);
+        }
+    }
+
+    @Override
+    public void execute(SqlStatement query, StatementBinder binder) throws SQLException {
+        QueryTimer timer = QueryTimer.start(this.slowQueryLog);
+        this.lock.lock();
+        try {
+            timer.acquired();
+            PreparedStatement statement = this.statementCache.prepare(this.connection, query);
+            timer.prepared();
+            try {
+                binder.bind(statement);
+                statement.execute();
+                timer.executed();
+            } catch (SQLException e) {
+                this.statementCache.invalidate(query);
+                throw e;
+            } finally {
+                this.statementCache.release(statement);
+            }
+        } finally {
+            timer.ended();
+            this.lock.unlock();
+            timer.finish(query, binder);
+        }
+    }
+
+    @Override
+    public <T> int[][] executeBatch(SqlStatement query, Iterable<? extends T> items,
+                                    BatchBinder<? super T> binder, int batchSize) throws SQLException {
+        QueryTimer timer = QueryTimer.start(this.slowQueryLog);
+        this.lock.lock();
+        try {
+            timer.acquired();
+            PreparedStatement statement = this.statementCache.prepare(this.connection, query);
+            timer.prepared();
+            try {
+                int[][] counts = BatchExecutor.execute(statement, items, binder, batchSize);
+                timer.executed();
+                return counts;
+            } catch (SQLException e) {
+                this.statementCache.invalidate(query);
+                throw e;
+            } finally {
+                this.statementCache.release(statement);
+            }
+        } finally {
+            timer.ended();
+            this.lock.unlock();
+            timer.finish(query, null);
+        }
+    }
+
+    @Override
+    public <T> Cursor<T> cursor(SqlStatement query, StatementBinder binder, ResultSetMapper<T> mapper, int fetchSize) throws SQLException {
+        this.lock.lock();
+        try {
+            // Not cached, as statement stays open as long as cursor and must not be evicted meanwhile
+            PreparedStatement statement = this.connection.prepareStatement(query.sql());
+            try {
+                statement.setFetchSize(fetchSize);
+                binder.bind(statement);
+                return new Cursor<>(statement.executeQuery(), mapper, statement);
+            } catch (SQLException | RuntimeException e) {
+                statement.close();
+                throw e;
+            }
+        } finally {
+            this.lock.unlock();
         }
     }
 
@@ -42,10 +218,37 @@ public class TransactionalDatabase implements Database {
         return this.connection;
     }
 
+    /**
+     * @return 1, as transaction has only one connection
+     */
+    @Override
+    public int getMaxConnections() {
+        return 1;
+    }
+
+    @Override
+    public @Nullable SlowQueryLog getSlowQueryLog() {
+        return this.slowQueryLog;
+    }
+
+    @Override
+    public StatementCacheStats getStatementCacheStats() {
+        return this.statementCache.getCounters().snapshot();
+    }
+
     @Override
     @SneakyThrows
     public void close() {
+        this.closeStatementCache();
         if (!this.connection.isClosed())
             this.connection.close();
     }
+
+    /**
+     * Closes statements cached for connection that is not pooled, pooled connections keep their statements
+     */
+    void closeStatementCache() {
+        if (this.ownsStatementCache)
+            this.statementCache.close();
+    }
 }
@@ -0,0 +1,38 @@
+package me.gregorsomething.database.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caches results of {@link Query} method by its arguments, concurrent calls with same arguments run query once.
+ * Cached values are shared by all callers, lists and maps are returned unmodifiable, arrays and primitive lists are copied.
+ * Methods with array parameters can not be cached, as arrays do not have value based equals.
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.METHOD)
+public @interface Cached {
+
+    /**
+     * Time result is kept after it was loaded, 0 keeps it until evicted
+     * @return time to live in {@link #unit()}
+     */
+    long ttl() default 0;
+
+    TimeUnit unit() default TimeUnit.SECONDS;
+
+    /**
+     * Count of results kept, least recently used ones are evicted first
+     * @return max count of entries
+     */
+    int maxEntries() default 10_000;
+
+    /**
+     * Count of rows kept, lists, maps and arrays weigh as many rows they have, other results weigh 1.
+     * 0 means only entry count is limited
+     * @return max weight of all entries
+     */
+    long maxWeight() default 0;
+}
@@ -29,4 +29,25 @@ public @interface Query {
      * @return if true, error is thrown, else default value gets returned
      */
     boolean onNoResultThrow() default false;
+
+    /**
+     * Count of rows driver fetches from database at once, 0 leaves driver default.
+     * For Stream and Cursor return types 0 means {@code Cursor.DEFAULT_FETCH_SIZE}
+     * @return fetch size
+     */
+    int fetchSize() default 0;
+
+    /**
+     * Max count of rows read from database, extra rows are silently dropped, 0 means no limit.
+     * When method returns single row (not List, Stream, Cursor or ResultSet), 0 means 1,
+     * so driver does not read rows that are not used
+     * @return max rows
+     */
+    int maxRows() default 0;
+
+    /**
+     * Seconds driver waits for query to execute, 0 means no limit
+     * @return query timeout in seconds
+     */
+    int queryTimeout() default 0;
 }
@@ -0,0 +1,15 @@
+package me.gregorsomething.database.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Values of this repository method parameter are not written to {@link me.gregorsomething.database.SlowQueryLog},
+ * including values of its fields and items of batch parameter
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.PARAMETER)
+public @interface Redacted {
+}
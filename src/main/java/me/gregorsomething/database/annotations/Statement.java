@@ -10,4 +10,12 @@ import java.lang.annotation.Target;
 public @interface Statement {
 
     String value();
+
+    /**
+     * Used when method takes collection or iterable parameter, then statement is executed for every item,
+     * sending this many items to database at once.
+     * Placeholders that reference that parameter, like {@code [( users.name )]}, are resolved against item.
+     * @return max count of items in one batch
+     */
+    int batchSize() default 1000;
 }
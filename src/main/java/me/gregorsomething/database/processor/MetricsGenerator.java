@@ -0,0 +1,144 @@
+package me.gregorsomething.database.processor;
+
+import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.FieldSpec;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.TypeName;
+import com.squareup.javapoet.TypeSpec;
+import lombok.RequiredArgsConstructor;
+import me.gregorsomething.database.Cursor;
+import me.gregorsomething.database.DoubleList;
+import me.gregorsomething.database.IntList;
+import me.gregorsomething.database.LongList;
+import me.gregorsomething.database.RepositoryMetrics;
+import me.gregorsomething.database.annotations.Statement;
+
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import java.sql.ResultSet;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Flow;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Adds call count, latency, rows and errors recording to repository methods, used when processor option
+ * {@link RepositoryProcessor#METRICS_OPTION} is set. Generated method body is moved to private method,
+ * and method itself times call of it, so bodies are generated same way with and without metrics.
+ */
+@RequiredArgsConstructor
+public class MetricsGenerator {
+    private final RepositoryProcessor processor;
+    private final TypeSpec.Builder builder;
+    /**
+     * Qualified name of repository interface, first part of method names in metrics,
+     * so repositories of same simple name in other packages do not share metrics
+     */
+    private final String repositoryName;
+    private int recorders;
+
+    /**
+     * @param method generated method of element
+     * @return method that records metrics and calls original method, that is added to repository as private method
+     */
+    public MethodSpec instrument(ExecutableElement element, MethodSpec method) {
+        String recorder = "METRICS_" + this.recorders++;
+        this.builder.addField(FieldSpec.builder(RepositoryMetrics.Recorder.class, recorder,
+                        Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                .initializer("$T.provider().recorder($S)", RepositoryMetrics.class,
+                        this.repositoryName + "#" + element.getSimpleName())
+                .build());
+
+        String measured = method.name + "Measured";
+        this.builder.addMethod(MethodSpec.methodBuilder(measured)
+                .addModifiers(Modifier.PRIVATE)
+                .addTypeVariables(method.typeVariables)
+                .returns(method.returnType)
+                .addParameters(method.parameters)
+                .varargs(method.varargs)
+                .addExceptions(method.exceptions)
+                .addCode(method.code)
+                .build());
+
+        String arguments = method.parameters.stream()
+                .map(p -> p.name)
+                .collect(Collectors.joining(", "));
+        return MethodSpec.methodBuilder(method.name)
+                .addAnnotations(method.annotations)
+                .addModifiers(method.modifiers)
+                .addTypeVariables(method.typeVariables)
+                .returns(method.returnType)
+                .addParameters(method.parameters)
+                .varargs(method.varargs)
+                .addExceptions(method.exceptions)
+                .addCode(this.timedCall(element, recorder, CodeBlock.of("this.$L($L)", measured, arguments)))
+                .build();
+    }
+
+    private CodeBlock timedCall(ExecutableElement element, String recorder, CodeBlock call) {
+        CodeBlock.Builder code = CodeBlock.builder()
+                .addStatement("long metricsStart = $T.nanoTime()", System.class);
+        if (this.processor.isAsync(element)) {
+            // Future does not throw, its failure is recorded when it completes
+            return code.add("return $L.whenComplete((metricsResult, metricsError) -> {\n$>", call)
+                    .addStatement("long metricsNanos = $T.nanoTime() - metricsStart", System.class)
+                    .beginControlFlow("if (metricsError == null)")
+                    .addStatement("$L.success(metricsNanos, $L)", recorder, this.rowsOf(element, "metricsResult"))
+                    .nextControlFlow("else")
+                    .addStatement("$L.failure(metricsNanos, metricsError)", recorder)
+                    .endControlFlow()
+                    .add("$<});\n")
+                    .build();
+        }
+        code.beginControlFlow("try");
+        if (element.getReturnType().getKind() == TypeKind.VOID) {
+            code.addStatement("$L", call)
+                    .addStatement("$L.success($T.nanoTime() - metricsStart, -1)", recorder, System.class);
+        } else {
+            code.addStatement("$T metricsResult = $L", TypeName.get(element.getReturnType()), call)
+                    .addStatement("$L.success($T.nanoTime() - metricsStart, $L)", recorder, System.class,
+                            this.rowsOf(element, "metricsResult"))
+                    .addStatement("return metricsResult");
+        }
+        // Rethrown as is, so only exceptions method can throw are thrown
+        return code.nextControlFlow("catch ($T e)", Throwable.class)
+                .addStatement("$L.failure($T.nanoTime() - metricsStart, e)", recorder, System.class)
+                .addStatement("throw e")
+                .endControlFlow()
+                .build();
+    }
+
+    /**
+     * @return code that counts rows in result, -1 when they are not known before result is read
+     */
+    private CodeBlock rowsOf(ExecutableElement element, String result) {
+        TypeMirror type = this.processor.resultTypeOf(element);
+        if (element.getAnnotation(Statement.class) != null)
+            return CodeBlock.of("-1");
+        if (type.getKind().isPrimitive())
+            return CodeBlock.of("1");
+        if (type instanceof ArrayType)
+            return CodeBlock.of("$L.length", result);
+        if (type.getKind() != TypeKind.DECLARED)
+            return CodeBlock.of("-1");
+        if (this.processor.isOfType(type, ResultSet.class)
+                || this.processor.isBaseTypeOf(type, Stream.class)
+                || this.processor.isBaseTypeOf(type, Cursor.class)
+                || this.processor.isBaseTypeOf(type, Flow.Publisher.class))
+            return CodeBlock.of("-1");
+        if (this.processor.isBaseTypeOf(type, Collection.class)
+                || this.processor.isBaseTypeOf(type, Map.class)
+                || this.processor.isOfType(type, IntList.class)
+                || this.processor.isOfType(type, LongList.class)
+                || this.processor.isOfType(type, DoubleList.class))
+            return CodeBlock.of("$L.size()", result);
+        if (this.processor.isBaseTypeOf(type, Optional.class))
+            return CodeBlock.of("$L.isPresent() ? 1 : 0", result);
+        return CodeBlock.of("$L == null ? 0 : 1", result);
+    }
+}
@@ -0,0 +1,237 @@
+package me.gregorsomething.database.processor;
+
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.ParameterizedTypeName;
+import com.squareup.javapoet.TypeName;
+import com.squareup.javapoet.TypeSpec;
+import lombok.RequiredArgsConstructor;
+import me.gregorsomething.database.Cursor;
+import me.gregorsomething.database.DoubleList;
+import me.gregorsomething.database.IntList;
+import me.gregorsomething.database.LongList;
+import me.gregorsomething.database.QueryCache;
+import me.gregorsomething.database.annotations.Cached;
+import me.gregorsomething.database.annotations.Query;
+import me.gregorsomething.database.processor.paramater.ParameterProcessor;
+import me.gregorsomething.database.processor.schema.TableAccess;
+
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Flow;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Makes {@link Cached} query methods read through {@link QueryCache} field of repository,
+ * query itself is moved to private method that cache calls on miss.
+ * Methods that change tables read by cached query invalidate its cache, tables are found from SQL at compile time.
+ * Transactional views of repository share caches with repository, but do not use them,
+ * as transaction can see its own changes.
+ */
+@RequiredArgsConstructor
+public class QueryCacheGenerator {
+    private final RepositoryProcessor processor;
+    private final TypeSpec.Builder builder;
+    /**
+     * If repository is transactional and has transaction field, that is null outside of transaction
+     */
+    private final boolean transactional;
+    private final Map<ExecutableElement, CachedQuery> cachedQueries = new LinkedHashMap<>();
+
+    /**
+     * Finds tables of cached queries, must be called before any method is generated,
+     * so statements know what caches they invalidate
+     * @param queryMethods all query methods of repository
+     */
+    public void addCachedQueries(List<ExecutableElement> queryMethods) {
+        Set<String> usedNames = new HashSet<>();
+        for (ExecutableElement element : queryMethods) {
+            Cached cached = element.getAnnotation(Cached.class);
+            if (cached == null)
+                continue;
+            String methodName = element.getSimpleName().toString();
+            String name = methodName;
+            // Overloaded methods get own caches
+            for (int i = 1; !usedNames.add(name); i++)
+                name = methodName + i;
+            String sql = ParameterProcessor.removePlaceholders(element.getAnnotation(Query.class).value());
+            this.cachedQueries.put(element, new CachedQuery(name, cached, TableAccess.ofQuery(sql)));
+        }
+    }
+
+    /**
+     * @param body code that returns result of query, like generated for method that is not cached
+     * @return code that returns cached result, async methods still have to be wrapped
+     */
+    public CodeBlock wrap(ExecutableElement element, Cached cached, CodeBlock body) {
+        TypeMirror type = this.processor.resultTypeOf(element);
+        this.validate(element, cached, type);
+        TypeName valueType = TypeName.get(type).box();
+        String name = this.cachedQueries.get(element).name();
+
+        this.builder.addField(ParameterizedTypeName.get(ClassName.get(QueryCache.class), valueType),
+                name + "Cache", Modifier.PRIVATE, Modifier.FINAL);
+
+        MethodSpec.Builder load = MethodSpec.methodBuilder(name + "Uncached")
+                .addModifiers(Modifier.PRIVATE)
+                .returns(TypeName.get(type))
+                .addException(SQLException.class)
+                .addCode(body);
+        for (VariableElement parameter : element.getParameters())
+            load.addParameter(TypeName.get(parameter.asType()), parameter.getSimpleName().toString());
+        this.builder.addMethod(load.build());
+
+        String arguments = element.getParameters().stream()
+                .map(p -> p.getSimpleName().toString())
+                .collect(Collectors.joining(", "));
+        CodeBlock call = this.frozen(type, CodeBlock.of("this.$LUncached($L)", name, arguments));
+        CodeBlock.Builder code = CodeBlock.builder();
+        if (this.processor.needsSqlExceptionCatch(element))
+            code.beginControlFlow("try");
+        if (this.transactional) {
+            code.beginControlFlow("if (this.$L != null)", RepositoryProcessor.TRANSACTION_FIELD)
+                    .addStatement("return $L", call)
+                    .endControlFlow();
+        }
+        code.addStatement("return $L", this.copied(type,
+                CodeBlock.of("this.$LCache.get($L, () -> $L)", name, this.keyFor(element), call)));
+        if (this.processor.needsSqlExceptionCatch(element)) {
+            code.nextControlFlow("catch ($T e)", SQLException.class)
+                    .addStatement("throw new $T(e)", RuntimeException.class)
+                    .endControlFlow();
+        }
+        return code.build();
+    }
+
+    /**
+     * Invalidates caches of queries that read tables changed by method, after it has run
+     * @param access tables method reads and changes
+     * @param body code of method, before it is wrapped to async or SQLException catch
+     * @return body that invalidates caches, or same body when no cache is affected
+     */
+    public CodeBlock invalidating(TableAccess access, CodeBlock body) {
+        List<String> invalidated = this.cachedQueries.values().stream()
+                .filter(q -> access.invalidates(q.access()))
+                .map(CachedQuery::name)
+                .toList();
+        if (invalidated.isEmpty())
+            return body;
+        CodeBlock.Builder code = CodeBlock.builder()
+                .beginControlFlow("try")
+                .add(body)
+                // Also when statement failed, as part of it could be done
+                .nextControlFlow("finally");
+        for (String name : invalidated)
+            code.addStatement("this.$LCache.invalidate($L)", name, this.transactional ? "this." + RepositoryProcessor.TRANSACTION_FIELD : "null");
+        return code.endControlFlow().build();
+    }
+
+    /**
+     * Adds creation of caches to constructor of repository
+     */
+    public void addCacheCreation(MethodSpec.Builder constructor) {
+        for (Map.Entry<ExecutableElement, CachedQuery> entry : this.cachedQueries.entrySet()) {
+            Cached cached = entry.getValue().cached();
+            constructor.addStatement("this.$LCache = new $T<>($LL, $L, $LL, $L)", entry.getValue().name(), QueryCache.class,
+                    cached.unit().toNanos(cached.ttl()), cached.maxEntries(), cached.maxWeight(),
+                    this.weigherFor(this.processor.resultTypeOf(entry.getKey()), cached));
+        }
+    }
+
+    /**
+     * Adds sharing of caches to constructor of transactional view
+     * @param parent name of parameter that holds repository view is made from
+     */
+    public void addCacheSharing(MethodSpec.Builder constructor, String parent) {
+        for (CachedQuery query : this.cachedQueries.values())
+            constructor.addStatement("this.$LCache = $L.$LCache", query.name(), parent, query.name());
+    }
+
+    private void validate(ExecutableElement element, Cached cached, TypeMirror type) {
+        if (cached.ttl() < 0 || cached.maxEntries() <= 0 || cached.maxWeight() < 0)
+            throw new ProcessingValidationException("Cache ttl and max weight can not be negative and max entries must be positive", element);
+        if (type.getKind() == TypeKind.DECLARED && (this.processor.isOfType(type, ResultSet.class)
+                || this.processor.isBaseTypeOf(type, Stream.class)
+                || this.processor.isBaseTypeOf(type, Cursor.class)
+                || this.processor.isBaseTypeOf(type, Flow.Publisher.class)))
+            throw new ProcessingValidationException("Only fully read results can be cached, not ResultSet, Stream, Cursor or Publisher", element);
+        // Arrays have identity equals, so they can not be in key
+        if (element.getParameters().stream().anyMatch(p -> p.asType().getKind() == TypeKind.ARRAY))
+            throw new ProcessingValidationException("Methods with array parameters can not be cached", element);
+    }
+
+    /**
+     * Single {@code int} or {@code long} argument is not boxed, many arguments are compared as list
+     */
+    private CodeBlock keyFor(ExecutableElement element) {
+        List<? extends VariableElement> parameters = element.getParameters();
+        if (parameters.isEmpty())
+            return CodeBlock.of("0L");
+        if (parameters.size() == 1)
+            return CodeBlock.of("$L", parameters.getFirst().getSimpleName());
+        return CodeBlock.of("$T.asList($L)", Arrays.class, parameters.stream()
+                .map(p -> p.getSimpleName().toString())
+                .collect(Collectors.joining(", ")));
+    }
+
+    /**
+     * Cached lists and maps are shared by callers, so they can not be changed
+     */
+    private CodeBlock frozen(TypeMirror type, CodeBlock value) {
+        if (type.getKind() != TypeKind.DECLARED)
+            return value;
+        if (this.processor.isBaseTypeOf(type, List.class))
+            return CodeBlock.of("$T.unmodifiableList($L)", Collections.class, value);
+        if (this.processor.isBaseTypeOf(type, Map.class))
+            return CodeBlock.of("$T.unmodifiableMap($L)", Collections.class, value);
+        return value;
+    }
+
+    /**
+     * Arrays and primitive lists can not be made unmodifiable, so every caller gets own copy of cached value
+     */
+    private CodeBlock copied(TypeMirror type, CodeBlock value) {
+        if (type.getKind() == TypeKind.ARRAY)
+            return CodeBlock.of("$L.clone()", value);
+        if (this.processor.isOfType(type, IntList.class) || this.processor.isOfType(type, LongList.class)
+                || this.processor.isOfType(type, DoubleList.class))
+            return CodeBlock.of("$L.copy()", value);
+        return value;
+    }
+
+    /**
+     * Weight is count of rows in value
+     */
+    private CodeBlock weigherFor(TypeMirror type, Cached cached) {
+        if (cached.maxWeight() == 0)
+            return CodeBlock.of("null");
+        if (type.getKind() == TypeKind.ARRAY)
+            return CodeBlock.of("v -> v.length");
+        if (type.getKind() == TypeKind.DECLARED && (this.processor.isBaseTypeOf(type, List.class)
+                || this.processor.isBaseTypeOf(type, Map.class)
+                || this.processor.isOfType(type, IntList.class)
+                || this.processor.isOfType(type, LongList.class)
+                || this.processor.isOfType(type, DoubleList.class)))
+            return CodeBlock.of("v -> v.size()");
+        return CodeBlock.of("null");
+    }
+
+    /**
+     * @param name name of cache field without Cache suffix, unique in repository
+     */
+    private record CachedQuery(String name, Cached cached, TableAccess access) {}
+}
@@ -3,21 +3,34 @@ package me.gregorsomething.database.processor;
 import com.squareup.javapoet.CodeBlock;
 import com.squareup.javapoet.MethodSpec;
 import lombok.RequiredArgsConstructor;
+import me.gregorsomething.database.Cursor;
+import me.gregorsomething.database.DoubleList;
+import me.gregorsomething.database.IntList;
+import me.gregorsomething.database.LongList;
+import me.gregorsomething.database.annotations.Cached;
 import me.gregorsomething.database.annotations.Query;
+import me.gregorsomething.database.processor.paramater.ParameterProcessor;
+import me.gregorsomething.database.processor.schema.TableAccess;
 import me.gregorsomething.database.processor.helpers.ElementUtils;
 import me.gregorsomething.database.processor.types.TypeMapperCodeGenerator;
 
 import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
 import javax.lang.model.type.TypeKind;
 import javax.lang.model.type.TypeMirror;
 import java.sql.ResultSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.Flow;
+import java.util.stream.Stream;
 
 @RequiredArgsConstructor
 public class QuerySubProcessor {
     private final RepositoryProcessor processor;
     private final TypeMapperCodeGenerator typeMapperCodeGenerator;
+    private final QueryCacheGenerator queryCacheGenerator;
 
     public MethodSpec createQueryMethod(ExecutableElement element) {
         Query query = this.validateQueryAnnotationOn(element);
@@ -37,7 +50,34 @@ public class QuerySubProcessor {
     }
 
     private CodeBlock generateCodeFor(ExecutableElement element, Query query) {
-        TypeMirror type = element.getReturnType();
+        if (!this.processor.isAsync(element))
+            return this.cachedIfNeeded(element, this.invalidatingIfWrites(query, this.generateBodyFor(element, query)));
+        TypeMirror type = this.processor.resultTypeOf(element);
+        if (type.getKind() == TypeKind.DECLARED && this.processor.isOfType(type, ResultSet.class)
+                || this.processor.isBaseTypeOf(type, Stream.class)
+                || this.processor.isBaseTypeOf(type, Cursor.class))
+            throw new ProcessingValidationException("Async query can not return open result, like ResultSet, Stream or Cursor", element);
+        return this.processor.wrapAsync(this.cachedIfNeeded(element, this.invalidatingIfWrites(query, this.generateBodyFor(element, query))));
+    }
+
+    /**
+     * Queries like INSERT ... RETURNING change tables, so they invalidate caches like statements
+     */
+    private CodeBlock invalidatingIfWrites(Query query, CodeBlock body) {
+        return this.queryCacheGenerator.invalidating(
+                TableAccess.ofQuery(ParameterProcessor.removePlaceholders(query.value())), body);
+    }
+
+    private CodeBlock cachedIfNeeded(ExecutableElement element, CodeBlock body) {
+        Cached cached = element.getAnnotation(Cached.class);
+        return cached == null ? body : this.queryCacheGenerator.wrap(element, cached, body);
+    }
+
+    private CodeBlock generateBodyFor(ExecutableElement element, Query query) {
+        TypeMirror type = this.processor.resultTypeOf(element);
+        if (type instanceof ArrayType array && array.getComponentType().getKind().isPrimitive()) {
+            return this.typeMapperCodeGenerator.forPrimitiveList(element, query, array.getComponentType().getKind(), true);
+        }
         if (type.getKind().isPrimitive()) {
             // Must be here, because primitives cause unexpected issues in other comparisons
             return this.typeMapperCodeGenerator.forType(element, query);
@@ -45,13 +85,42 @@ public class QuerySubProcessor {
         if (this.processor.isOfType(type, ResultSet.class)) {
             return this.typeMapperCodeGenerator.forResultSet(element, query);
         }
+        if (this.processor.isOfType(type, IntList.class)) {
+            return this.typeMapperCodeGenerator.forPrimitiveList(element, query, TypeKind.INT, false);
+        }
+        if (this.processor.isOfType(type, LongList.class)) {
+            return this.typeMapperCodeGenerator.forPrimitiveList(element, query, TypeKind.LONG, false);
+        }
+        if (this.processor.isOfType(type, DoubleList.class)) {
+            return this.typeMapperCodeGenerator.forPrimitiveList(element, query, TypeKind.DOUBLE, false);
+        }
         if (this.processor.isBaseTypeOf(type, Optional.class)) {
             return this.typeMapperCodeGenerator.forOptional(element, query,
-                    ElementUtils.getTypeParameterOf(element.getReturnType(), element));
+                    ElementUtils.getTypeParameterOf(type, element));
+        }
+        if (this.processor.isBaseTypeOf(type, Stream.class)) {
+            return this.typeMapperCodeGenerator.forCursor(element, query,
+                    ElementUtils.getTypeParameterOf(type, element), true);
+        }
+        if (this.processor.isBaseTypeOf(type, Flow.Publisher.class)) {
+            if (this.processor.isAsync(element))
+                throw new ProcessingValidationException("Publisher is already async, it can not be in future", element);
+            return this.typeMapperCodeGenerator.forPublisher(element, query,
+                    ElementUtils.getTypeParameterOf(type, element));
+        }
+        if (this.processor.isBaseTypeOf(type, Cursor.class)) {
+            return this.typeMapperCodeGenerator.forCursor(element, query,
+                    ElementUtils.getTypeParameterOf(type, element), false);
+        }
+        if (this.processor.isBaseTypeOf(type, Map.class)) {
+            List<? extends TypeMirror> arguments = ((DeclaredType) type).getTypeArguments();
+            if (arguments.size() != 2)
+                throw new ProcessingValidationException("Map return type must have key and value types", element);
+            return this.typeMapperCodeGenerator.forMap(element, query, arguments.get(0), arguments.get(1));
         }
         if (this.processor.isBaseTypeOf(type, List.class)) {
             return this.typeMapperCodeGenerator.forList(element, query,
-                    ElementUtils.getTypeParameterOf(element.getReturnType(), element));
+                    ElementUtils.getTypeParameterOf(type, element));
         }
         return this.typeMapperCodeGenerator.forType(element, query);
     }
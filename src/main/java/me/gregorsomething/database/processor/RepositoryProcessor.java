@@ -1,45 +1,124 @@
 package me.gregorsomething.database.processor;
 
 import com.google.auto.service.AutoService;
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.FieldSpec;
 import com.squareup.javapoet.JavaFile;
 import com.squareup.javapoet.MethodSpec;
 import com.squareup.javapoet.TypeName;
 import com.squareup.javapoet.TypeSpec;
+import lombok.Getter;
 import lombok.SneakyThrows;
 import me.gregorsomething.database.Database;
+import me.gregorsomething.database.SchemaRegistry;
 import me.gregorsomething.database.Transaction;
 import me.gregorsomething.database.Transactional;
 import me.gregorsomething.database.annotations.Query;
 import me.gregorsomething.database.annotations.Repository;
 import me.gregorsomething.database.annotations.Statement;
+import me.gregorsomething.database.processor.explain.QueryExplainer;
 import me.gregorsomething.database.processor.helpers.ElementUtils;
 import me.gregorsomething.database.processor.paramater.ParameterProcessor;
+import me.gregorsomething.database.processor.schema.SchemaSnapshot;
 import me.gregorsomething.database.processor.types.ComplexTypeResolver;
 import me.gregorsomething.database.processor.types.TypeMapperCodeGenerator;
 import me.gregorsomething.database.processor.types.TypeMapperResolver;
+import net.sf.jsqlparser.JSQLParserException;
 import org.jetbrains.annotations.Nullable;
 
 import javax.annotation.processing.*;
 import javax.lang.model.SourceVersion;
 import javax.lang.model.element.*;
+import javax.lang.model.type.TypeKind;
 import javax.lang.model.type.TypeMirror;
 import javax.lang.model.util.Elements;
 import javax.lang.model.util.Types;
 import java.io.IOException;
 import java.lang.annotation.Annotation;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 @SupportedAnnotationTypes(
         "me.gregorsomething.database.annotations.Repository")
 @SupportedSourceVersion(SourceVersion.RELEASE_21)
+@SupportedOptions({RepositoryProcessor.SCHEMA_OPTION, RepositoryProcessor.METRICS_OPTION,
+        RepositoryProcessor.EXPLAIN_URL_OPTION, RepositoryProcessor.EXPLAIN_OUTPUT_OPTION,
+        RepositoryProcessor.EXPLAIN_BASELINE_OPTION, RepositoryProcessor.EXPLAIN_LARGE_TABLE_OPTION,
+        RepositoryProcessor.EXPLAIN_STRICT_OPTION})
 @AutoService(Processor.class)
 public class RepositoryProcessor extends AbstractProcessor {
+    /**
+     * Executor of repository database, it is not kept in field, so transaction makes its executor only when it is used
+     */
+    public static final String EXECUTOR = "this.database.getExecutor()";
+    /**
+     * Transaction of transactional view, null in repository itself
+     */
+    public static final String TRANSACTION_FIELD = "transaction";
+    /**
+     * Comma separated paths of DDL files, tables from them are used to expand wildcards in queries
+     */
+    public static final String SCHEMA_OPTION = "gsdb.schema";
+    /**
+     * When true, generated methods record calls, latency, rows and errors to {@link me.gregorsomething.database.RepositoryMetrics}
+     */
+    public static final String METRICS_OPTION = "gsdb.metrics";
+    /**
+     * JDBC URL of local Postgres database, with user and password, queries are explained on it when it is given
+     */
+    public static final String EXPLAIN_URL_OPTION = "gsdb.explain.url";
+    /**
+     * Directory where query plans are written, one file per repository
+     */
+    public static final String EXPLAIN_OUTPUT_OPTION = "gsdb.explain.output";
+    /**
+     * Directory of checked in query plans, that new plans are compared with
+     */
+    public static final String EXPLAIN_BASELINE_OPTION = "gsdb.explain.baseline";
+    /**
+     * Row count of tables whose sequential scans are reported
+     */
+    public static final String EXPLAIN_LARGE_TABLE_OPTION = "gsdb.explain.largeTable";
+    /**
+     * When true, sequential scans of large tables and plans that differ from baseline fail compilation
+     */
+    public static final String EXPLAIN_STRICT_OPTION = "gsdb.explain.strict";
+
+    @Getter
+    private final SchemaSnapshot schemaSnapshot = new SchemaSnapshot();
+    private boolean metrics;
+    private @Nullable QueryExplainer queryExplainer;
+
+    @Override
+    public synchronized void init(ProcessingEnvironment processingEnv) {
+        super.init(processingEnv);
+        this.metrics = Boolean.parseBoolean(processingEnv.getOptions().get(METRICS_OPTION));
+        this.queryExplainer = QueryExplainer.fromOptions(this, processingEnv.getOptions());
+        String schemaFiles = processingEnv.getOptions().get(SCHEMA_OPTION);
+        if (schemaFiles == null || schemaFiles.isBlank())
+            return;
+        for (String file : schemaFiles.split(",")) {
+            try {
+                this.schemaSnapshot.addDdl(Files.readString(Path.of(file.trim())));
+            } catch (IOException | JSQLParserException e) {
+                this.error("Failed to read schema file " + file.trim() + ": " + e.getMessage(), null);
+            }
+        }
+    }
 
     @Override
     public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnvironment) {
+        for (TypeElement annotation : annotations) {
+            this.addRepositoryTables(roundEnvironment.getElementsAnnotatedWith(annotation));
+        }
         for (TypeElement annotation : annotations) {
             for (Element element : roundEnvironment.getElementsAnnotatedWith(annotation)) {
                 try {
@@ -53,6 +132,25 @@ public class RepositoryProcessor extends AbstractProcessor {
         return true;
     }
 
+    /**
+     * Tables created by repositories are added before any repository is processed,
+     * so queries can use tables created by other repositories
+     */
+    private void addRepositoryTables(Set<? extends Element> repositories) {
+        for (Element element : repositories) {
+            Repository repository = element.getAnnotation(Repository.class);
+            if (repository == null)
+                continue;
+            for (String statement : repository.value()) {
+                try {
+                    this.schemaSnapshot.addDdl(statement);
+                } catch (JSQLParserException ignored) {
+                    // Not all database specific statements can be parsed, those tables stay unknown
+                }
+            }
+        }
+    }
+
     private boolean processRepository(Element element) throws IOException {
         if (!element.getKind().isInterface())
             return error("Repository annotation can be used only on interface!", element);
@@ -65,14 +163,19 @@ public class RepositoryProcessor extends AbstractProcessor {
         TypeMapperResolver extraTypes = new TypeMapperResolver(this, builder);
         extraTypes.setup(repoAnnotation);
 
-        this.createConstructor(builder, repoAnnotation);
-
         try {
 
-            final List<MethodSpec> accessMethods = this.createMethods(element, extraTypes);
+            TypeMirror transactionType = this.transactionalTypeOf(element);
+            StatementTable statementTable = new StatementTable(((TypeElement) element).getQualifiedName().toString());
+            QueryCacheGenerator queryCacheGenerator = new QueryCacheGenerator(this, builder, transactionType != null);
+            final List<MethodSpec> accessMethods = this.createMethods(element, builder, extraTypes, statementTable, queryCacheGenerator);
+            // Constructor is made after methods, as they add caches it creates
+            this.createConstructor(builder, repoAnnotation, element, queryCacheGenerator, transactionType != null);
             builder.addMethods(accessMethods);
+            statementTable.addTo(builder);
 
-            this.addTransactionSupportIfNeeded(element, builder);
+            if (transactionType != null)
+                this.implementTransactional((TypeElement) element, transactionType, builder, queryCacheGenerator);
 
         } catch (ProcessingValidationException e) {
             return error(e.getMessage(), e.getElement());
@@ -81,31 +184,48 @@ public class RepositoryProcessor extends AbstractProcessor {
         JavaFile javaFile = JavaFile.builder(element.getEnclosingElement().toString(), builder.build())
                 .build();
         javaFile.writeTo(this.processingEnv.getFiler());
+        if (this.queryExplainer != null)
+            this.queryExplainer.explain((TypeElement) element);
         return true;
     }
 
-    private List<MethodSpec> createMethods(Element element, TypeMapperResolver extraTypes) {
+    private List<MethodSpec> createMethods(Element element, TypeSpec.Builder builder, TypeMapperResolver extraTypes,
+                                           StatementTable statementTable, QueryCacheGenerator queryCacheGenerator) {
         ParameterProcessor parameterProcessor = new ParameterProcessor(this);
-        StatementSubProcessor subProcessorStatement = new StatementSubProcessor(this, parameterProcessor);
+        StatementSubProcessor subProcessorStatement = new StatementSubProcessor(this, parameterProcessor, statementTable,
+                queryCacheGenerator);
         QuerySubProcessor subProcessorQuery = new QuerySubProcessor(this,
                 new TypeMapperCodeGenerator(this, extraTypes,
                         parameterProcessor,
-                        new ComplexTypeResolver(this, extraTypes)
-                )
+                        new ComplexTypeResolver(this, extraTypes),
+                        statementTable
+                ),
+                queryCacheGenerator
         );
 
         final List<ExecutableElement> statementMethods = this.getMethodsWithAnnotation(element, Statement.class);
         final List<ExecutableElement> queryMethods = this.getMethodsWithAnnotation(element, Query.class);
-        final List<MethodSpec> specs = statementMethods.stream()
-                .map(subProcessorStatement::createStatementMethod)
-                .collect(Collectors.toList());
-        specs.addAll(queryMethods.stream()
-                .map(subProcessorQuery::createQueryMethod).toList());
+        queryCacheGenerator.addCachedQueries(queryMethods);
+        MetricsGenerator metricsGenerator = this.metrics
+                ? new MetricsGenerator(this, builder, ((TypeElement) element).getQualifiedName().toString()) : null;
+        final List<MethodSpec> specs = new ArrayList<>();
+        for (ExecutableElement method : statementMethods)
+            specs.add(this.instrumented(metricsGenerator, method, subProcessorStatement.createStatementMethod(method)));
+        for (ExecutableElement method : queryMethods)
+            specs.add(this.instrumented(metricsGenerator, method, subProcessorQuery.createQueryMethod(method)));
         return specs;
     }
 
-    private void createConstructor(TypeSpec.Builder builder, Repository repoAnnotation) {
+    private MethodSpec instrumented(@Nullable MetricsGenerator metricsGenerator, ExecutableElement element, MethodSpec method) {
+        return metricsGenerator == null ? method : metricsGenerator.instrument(element, method);
+    }
+
+    private void createConstructor(TypeSpec.Builder builder, Repository repoAnnotation, Element element,
+                                   QueryCacheGenerator queryCacheGenerator, boolean transactional) {
         builder.addField(Database.class, "database", Modifier.PRIVATE, Modifier.FINAL);
+        if (transactional) {
+            builder.addField(Transaction.class, TRANSACTION_FIELD, Modifier.PRIVATE, Modifier.FINAL);
+        }
 
         MethodSpec.Builder code = MethodSpec.constructorBuilder()
                 .addModifiers(Modifier.PUBLIC)
@@ -113,36 +233,69 @@ public class RepositoryProcessor extends AbstractProcessor {
                 .addStatement("this.database = database")
                 .addAnnotation(SneakyThrows.class);
 
-        for (String statement : repoAnnotation.value()) {
-            code.addStatement("this.database.execute($S)", statement);
+        if (transactional)
+            code.addStatement("this.$L = null", TRANSACTION_FIELD);
+        queryCacheGenerator.addCacheCreation(code);
+
+        if (repoAnnotation.value().length > 0) {
+            builder.addField(FieldSpec.builder(String[].class, SchemaRegistry.SCHEMA_FIELD,
+                            Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)
+                    .initializer("{\n$>$L$<}", Arrays.stream(repoAnnotation.value())
+                            .map(statement -> CodeBlock.of("$S", statement))
+                            .collect(CodeBlock.joining(",\n")))
+                    .build());
+            // Statements are run once per database, not for every instance
+            code.addStatement("this.database.getSchemaRegistry().initialize($S, $L)",
+                    this.getElementUtils().getBinaryName((TypeElement) element), SchemaRegistry.SCHEMA_FIELD);
         }
 
         builder.addMethod(code.build());
     }
 
-    private void addTransactionSupportIfNeeded(Element element, TypeSpec.Builder builder) {
-        if (element instanceof TypeElement typeElement) {
-            TypeMirror transactionType = typeElement.getInterfaces().stream().filter(i -> this.isBaseTypeOf(i, Transactional.class)).findFirst().orElse(null);
-            if (transactionType == null)
-                return;
-            this.implementTransactional(typeElement, transactionType, builder);
-        } else
-            throw new ProcessingValidationException("Expected TypeElement, got something else.", element);
+    /**
+     * @return Transactional interface repository extends, null if it is not transactional
+     */
+    private @Nullable TypeMirror transactionalTypeOf(Element element) {
+        if (element instanceof TypeElement typeElement)
+            return typeElement.getInterfaces().stream().filter(i -> this.isBaseTypeOf(i, Transactional.class)).findFirst().orElse(null);
+        throw new ProcessingValidationException("Expected TypeElement, got something else.", element);
     }
 
-    private void implementTransactional(TypeElement repository, TypeMirror transactionType, TypeSpec.Builder builder) {
+    private void implementTransactional(TypeElement repository, TypeMirror transactionType, TypeSpec.Builder builder,
+                                        QueryCacheGenerator queryCacheGenerator) {
         builder.addSuperinterface(transactionType)
+                .addMethod(this.createViewConstructor(repository, queryCacheGenerator))
                 .addMethod(this.implementGetNewTransaction())
                 .addMethod(this.implementTransactionalRepoCreate(repository));
     }
 
+    /**
+     * View uses connection of transaction and shares caches with repository,
+     * schema statements are not executed again
+     */
+    private MethodSpec createViewConstructor(TypeElement repository, QueryCacheGenerator queryCacheGenerator) {
+        String parent = "repository";
+        MethodSpec.Builder code = MethodSpec.constructorBuilder()
+                .addModifiers(Modifier.PRIVATE)
+                .addParameter(ClassName.get(this.getElementUtils().getPackageOf(repository).toString(),
+                        repository.getSimpleName() + "Imp"), parent)
+                .addParameter(Transaction.class, TRANSACTION_FIELD)
+                .addStatement("this.database = $L.getTransactionalDatabase()", TRANSACTION_FIELD)
+                .addStatement("this.$L = $L", TRANSACTION_FIELD, TRANSACTION_FIELD);
+        queryCacheGenerator.addCacheSharing(code, parent);
+        return code.build();
+    }
+
     private MethodSpec implementGetNewTransaction() {
         return MethodSpec.methodBuilder("getNewTransaction")
                 .returns(Transaction.class)
                 .addAnnotation(Override.class)
                 .addAnnotation(SneakyThrows.class)
                 .addModifiers(Modifier.PUBLIC)
-                .addStatement("return new $T(this.database.getConnection())", Transaction.class).build();
+                .addParameter(Transaction.Isolation.class, "isolation")
+                .addParameter(boolean.class, "readOnly")
+                .addStatement("return new $T(this.database.getConnection(), isolation, readOnly, this.database.getSlowQueryLog())",
+                        Transaction.class).build();
     }
 
     private MethodSpec implementTransactionalRepoCreate(TypeElement repository) {
@@ -151,7 +304,7 @@ public class RepositoryProcessor extends AbstractProcessor {
                 .addAnnotation(Override.class)
                 .returns(TypeName.get(repository.asType()))
                 .addParameter(Transaction.class, "transaction")
-                .addStatement("return new $TImp(transaction.getTransactionalDatabase())", TypeName.get(repository.asType()))
+                .addStatement("return new $TImp(this, transaction)", TypeName.get(repository.asType()))
                 .build();
     }
 
@@ -177,7 +330,7 @@ public class RepositoryProcessor extends AbstractProcessor {
     }
 
     public boolean isOfType(TypeMirror type1, Class<?> type2) {
-        TypeMirror type = this.processingEnv.getElementUtils().getTypeElement(type2.getTypeName()).asType();
+        TypeMirror type = this.processingEnv.getElementUtils().getTypeElement(type2.getCanonicalName()).asType();
         return this.processingEnv.getTypeUtils().isAssignable(type1, type);
     }
 
@@ -186,6 +339,15 @@ public class RepositoryProcessor extends AbstractProcessor {
         return this.isOfType(type, type2);
     }
 
+    /**
+     * Checks if type is assignable to class when generics of both are ignored, e.g. List&lt;User&gt; is Iterable
+     */
+    public boolean isOfTypeIgnoringGenerics(TypeMirror type1, Class<?> type2) {
+        TypeMirror type = this.processingEnv.getElementUtils().getTypeElement(type2.getCanonicalName()).asType();
+        Types types = this.processingEnv.getTypeUtils();
+        return types.isAssignable(types.erasure(type1), types.erasure(type));
+    }
+
     public Types getTypeUtils() {
         return processingEnv.getTypeUtils();
     }
@@ -194,6 +356,47 @@ public class RepositoryProcessor extends AbstractProcessor {
         return processingEnv.getElementUtils();
     }
 
+    /**
+     * Async methods return CompletableFuture and run on repository executor
+     */
+    public boolean isAsync(ExecutableElement element) {
+        return element.getReturnType().getKind().equals(TypeKind.DECLARED)
+                && this.isBaseTypeOf(element.getReturnType(), CompletableFuture.class);
+    }
+
+    /**
+     * @return type of value method gives, for async methods it is type of future's value
+     */
+    public TypeMirror resultTypeOf(ExecutableElement element) {
+        if (this.isAsync(element))
+            return ElementUtils.getTypeParameterOf(element.getReturnType(), element);
+        return element.getReturnType();
+    }
+
+    /**
+     * SQLException must be caught when method does not declare it, async methods catch it to complete future with it
+     */
+    public boolean needsSqlExceptionCatch(ExecutableElement element) {
+        return element.getThrownTypes().isEmpty() && !this.isAsync(element);
+    }
+
+    /**
+     * Wraps method body to run on repository executor, SQLException completes future exceptionally
+     * @param body code that returns value of future and can throw SQLException
+     * @return code that returns future
+     */
+    public CodeBlock wrapAsync(CodeBlock body) {
+        return CodeBlock.builder()
+                .add("return $T.supplyAsync(() -> {\n", CompletableFuture.class).indent()
+                .beginControlFlow("try")
+                .add(body)
+                .nextControlFlow("catch ($T e)", SQLException.class)
+                .addStatement("throw new $T(e)", CompletionException.class)
+                .endControlFlow()
+                .unindent().add("}, $L);\n", EXECUTOR)
+                .build();
+    }
+
     public MethodSpec.Builder validateAndOverrideMethod(ExecutableElement element) {
         MethodSpec.Builder builder = ElementUtils.overrideMethod(element, Modifier.PUBLIC);
 
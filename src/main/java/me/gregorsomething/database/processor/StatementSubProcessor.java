@@ -4,17 +4,27 @@ import com.squareup.javapoet.CodeBlock;
 import com.squareup.javapoet.MethodSpec;
 import lombok.RequiredArgsConstructor;
 import me.gregorsomething.database.annotations.Statement;
-import me.gregorsomething.database.processor.helpers.Pair;
+import me.gregorsomething.database.processor.helpers.ElementUtils;
 import me.gregorsomething.database.processor.paramater.ParameterProcessor;
+import me.gregorsomething.database.processor.paramater.ProcessedQuery;
+import me.gregorsomething.database.processor.schema.TableAccess;
+import org.jetbrains.annotations.Nullable;
 
 import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
 import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.type.WildcardType;
 import java.sql.SQLException;
+import java.util.List;
 
 @RequiredArgsConstructor
 public class StatementSubProcessor {
     private final RepositoryProcessor processor;
     private final ParameterProcessor parameterProcessor;
+    private final StatementTable statementTable;
+    private final QueryCacheGenerator queryCacheGenerator;
 
     public MethodSpec createStatementMethod(ExecutableElement element) {
         Statement statement = this.validateStatementAnnotationOn(element);
@@ -24,8 +34,6 @@ public class StatementSubProcessor {
     }
 
     private Statement validateStatementAnnotationOn(ExecutableElement element) {
-        if (!element.getReturnType().getKind().equals(TypeKind.VOID))
-            throw new ProcessingValidationException("Statement cant have return type!", element);
         Statement[] annotations = element.getAnnotationsByType(Statement.class);
         if (annotations.length != 1)
             throw new ProcessingValidationException("Statement annotation can be use once on an element!", element);
@@ -34,17 +42,101 @@ public class StatementSubProcessor {
     }
 
     private CodeBlock generateCodeFor(ExecutableElement element, Statement statement) {
-        Pair<String, String> queryParams = this.parameterProcessor.queryParametersFor(element, statement.value());
-        if (!element.getThrownTypes().isEmpty())
-            return CodeBlock.builder()
-                    .addStatement("this.database.execute($S$L)", queryParams.left(), queryParams.right())
-                    .build();
+        VariableElement batchParameter = this.findBatchParameter(element);
+        if (batchParameter != null)
+            return this.generateBatchCodeFor(element, statement, batchParameter);
+        if (!this.isNoResultType(element, this.processor.resultTypeOf(element)))
+            throw new ProcessingValidationException("Statement cant have return type!", element);
+
+        ProcessedQuery processedQuery = this.parameterProcessor.queryParametersFor(element, statement.value());
+        CodeBlock sql = this.statementTable.reference(element, processedQuery);
+        CodeBlock binder = this.parameterProcessor.binderFor(processedQuery);
+        return this.wrapCall(element, processedQuery, CodeBlock.of("this.database.execute($L, $L)", sql, binder), false);
+    }
+
+    /**
+     * Statement is executed for every item of collection in batches
+     */
+    private CodeBlock generateBatchCodeFor(ExecutableElement element, Statement statement, VariableElement batchParameter) {
+        TypeMirror resultType = this.processor.resultTypeOf(element);
+        boolean returnsCounts = this.isUpdateCountsType(resultType);
+        if (!returnsCounts && !this.isNoResultType(element, resultType))
+            throw new ProcessingValidationException("Batch statement can return only void or int[][] (update counts of batches)", element);
+        if (statement.batchSize() < 1)
+            throw new ProcessingValidationException("Batch size must be positive", element);
+
+        String itemName = "$" + batchParameter.getSimpleName().toString() + "Item";
+        TypeMirror itemType = this.getItemType(batchParameter, element);
+        ProcessedQuery processedQuery = this.parameterProcessor.batchQueryParametersFor(element, statement.value(),
+                batchParameter, itemType, itemName);
+        CodeBlock call = CodeBlock.of("this.database.executeBatch($L, $L, $L, $L)",
+                this.statementTable.reference(element, processedQuery),
+                batchParameter.getSimpleName().toString(),
+                this.parameterProcessor.batchBinderFor(processedQuery, itemName),
+                statement.batchSize());
+        return this.wrapCall(element, processedQuery, call, returnsCounts);
+    }
+
+    /**
+     * @return true if type is void, or Void for async methods
+     */
+    private boolean isNoResultType(ExecutableElement element, TypeMirror type) {
+        if (this.processor.isAsync(element))
+            return this.processor.isOfType(type, Void.class);
+        return type.getKind().equals(TypeKind.VOID);
+    }
+
+    private boolean isUpdateCountsType(TypeMirror type) {
+        return type instanceof ArrayType outer
+                && outer.getComponentType() instanceof ArrayType inner
+                && inner.getComponentType().getKind().equals(TypeKind.INT);
+    }
+
+    /**
+     * Makes method body from database call, invalidating caches of changed tables
+     * and catching SQLException if method does not throw it
+     * @param returnsResult if result of call is returned from method
+     */
+    private CodeBlock wrapCall(ExecutableElement element, ProcessedQuery processedQuery, CodeBlock call, boolean returnsResult) {
+        CodeBlock.Builder body = CodeBlock.builder();
+        if (returnsResult) {
+            body.addStatement("return $L", call);
+        } else {
+            body.addStatement(call);
+            // Future of Void is completed with null
+            if (this.processor.isAsync(element))
+                body.addStatement("return null");
+        }
+        CodeBlock invalidating = this.queryCacheGenerator.invalidating(TableAccess.ofStatement(processedQuery.sql()), body.build());
+        if (this.processor.isAsync(element))
+            return this.processor.wrapAsync(invalidating);
+        if (!this.processor.needsSqlExceptionCatch(element))
+            return invalidating;
         return CodeBlock.builder()
                 .beginControlFlow("try")
-                .addStatement("this.database.execute($S$L)", queryParams.left(), queryParams.right())
+                .add(invalidating)
                 .nextControlFlow("catch ($T e)", SQLException.class)
                 .addStatement("throw new $T(e)", RuntimeException.class)
                 .endControlFlow()
                 .build();
     }
+
+    private @Nullable VariableElement findBatchParameter(ExecutableElement element) {
+        List<? extends VariableElement> batchParameters = element.getParameters().stream()
+                .filter(p -> this.processor.isOfTypeIgnoringGenerics(p.asType(), Iterable.class))
+                .toList();
+        if (batchParameters.size() > 1)
+            throw new ProcessingValidationException("Statement can have only one collection parameter", element);
+        return batchParameters.isEmpty() ? null : batchParameters.getFirst();
+    }
+
+    private TypeMirror getItemType(VariableElement batchParameter, ExecutableElement element) {
+        TypeMirror itemType = ElementUtils.getTypeParameterOf(batchParameter.asType(), element);
+        if (itemType instanceof WildcardType wildcard) {
+            if (wildcard.getExtendsBound() == null)
+                throw new ProcessingValidationException("Batch items must have known type", element);
+            return wildcard.getExtendsBound();
+        }
+        return itemType;
+    }
 }
@@ -0,0 +1,80 @@
+package me.gregorsomething.database.processor;
+
+import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.FieldSpec;
+import com.squareup.javapoet.TypeSpec;
+import lombok.RequiredArgsConstructor;
+import me.gregorsomething.database.SqlStatement;
+import me.gregorsomething.database.processor.paramater.ProcessedQuery;
+
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Collects SQL statements of one repository, giving each distinct statement of method dense id,
+ * that is index in generated static statement table. Statements know method that uses them, for slow query log
+ */
+@RequiredArgsConstructor
+public class StatementTable {
+    public static final String FIELD_NAME = "STATEMENTS";
+
+    /**
+     * Qualified name of repository interface, so origins of statements match names of methods in metrics
+     */
+    private final String repositoryName;
+    private final List<Key> statements = new ArrayList<>();
+
+    /**
+     * Registers statement if needed
+     * @param element method that uses statement
+     * @param query processed query
+     * @return code that references statement from table, like {@code STATEMENTS[2]}
+     */
+    public CodeBlock reference(ExecutableElement element, ProcessedQuery query) {
+        return this.reference(element, query, CodeBlock.of(""));
+    }
+
+    /**
+     * Registers statement if needed, same SQL with different settings gets different id,
+     * so cached prepared statement is not shared by methods that configure it differently
+     * @param element method that uses statement
+     * @param query processed query
+     * @param settings code that configures prepared statement
+     * @return code that references statement from table, like {@code STATEMENTS[2]}
+     */
+    public CodeBlock reference(ExecutableElement element, ProcessedQuery query, CodeBlock settings) {
+        Key key = new Key(query.sql(), settings.toString(), this.repositoryName + "#" + element.getSimpleName(),
+                Arrays.stream(query.redactedIndexes()).boxed().toList());
+        int id = this.statements.indexOf(key);
+        if (id == -1) {
+            id = this.statements.size();
+            this.statements.add(key);
+        }
+        return CodeBlock.of("$L[$L]", FIELD_NAME, id);
+    }
+
+    /**
+     * Adds statement table field to repository implementation, must be called after all methods are generated
+     * @param builder repository implementation
+     */
+    public void addTo(TypeSpec.Builder builder) {
+        if (this.statements.isEmpty())
+            return;
+        CodeBlock declarations = this.statements.stream()
+                .map(s -> s.redacted().isEmpty()
+                        ? CodeBlock.of("$T.declare($S, $S)", SqlStatement.class, s.sql(), s.origin())
+                        : CodeBlock.of("$T.declare($S, $S, $L)", SqlStatement.class, s.sql(), s.origin(),
+                                s.redacted().stream().map(Object::toString).collect(Collectors.joining(", "))))
+                .collect(CodeBlock.joining(",\n"));
+        builder.addField(FieldSpec.builder(SqlStatement[].class, FIELD_NAME,
+                        Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                .initializer("$T.register(\n$>$>$L$<$<)", SqlStatement.class, declarations)
+                .build());
+    }
+
+    private record Key(String sql, String settings, String origin, List<Integer> redacted) {}
+}
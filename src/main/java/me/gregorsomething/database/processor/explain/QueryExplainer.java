@@ -0,0 +1,370 @@
+package me.gregorsomething.database.processor.explain;
+
+import me.gregorsomething.database.annotations.Query;
+import me.gregorsomething.database.annotations.Repository;
+import me.gregorsomething.database.processor.RepositoryProcessor;
+import me.gregorsomething.database.processor.paramater.ParameterProcessor;
+import me.gregorsomething.database.processor.paramater.ProcessedQuery;
+import me.gregorsomething.database.processor.paramater.QueryParameter;
+import org.jetbrains.annotations.Nullable;
+
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.PrimitiveType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.ServiceLoader;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Runs EXPLAIN for every {@link Query} of repository on local database, used when processor option
+ * {@link RepositoryProcessor#EXPLAIN_URL_OPTION} is set. Plans are written to one file per repository in
+ * {@link RepositoryProcessor#EXPLAIN_OUTPUT_OPTION} and compared with file of same name in
+ * {@link RepositoryProcessor#EXPLAIN_BASELINE_OPTION}. Sequential scans of large tables and plans that differ
+ * from baseline are reported as warnings, or as errors when {@link RepositoryProcessor#EXPLAIN_STRICT_OPTION} is true.
+ * <p>
+ * Postgres 16 or newer is needed, as placeholders have no values and only generic plans can be made for them.
+ * Schema statements of repository are run before queries, everything is rolled back after.
+ */
+public class QueryExplainer {
+    /**
+     * Tables that have at least this many rows are large, if it is not given with
+     * {@link RepositoryProcessor#EXPLAIN_LARGE_TABLE_OPTION}
+     */
+    public static final long DEFAULT_LARGE_TABLE_ROWS = 10_000;
+    private static final String PLAN_FILE_EXTENSION = ".plan";
+    private static final String COMMENT = "-- ";
+    // Costs and row estimates depend on statistics, so they are not part of compared plan
+    private static final Pattern COST = Pattern.compile("\\s+\\(cost=[^)]*\\)");
+    private static final Pattern SEQ_SCAN = Pattern.compile("Seq Scan on (\\S+)");
+
+    private final RepositoryProcessor processor;
+    private final ParameterProcessor parameterProcessor;
+    private final String url;
+    private final Path output;
+    private final @Nullable Path baseline;
+    private final long largeTableRows;
+    private final boolean strict;
+
+    private QueryExplainer(RepositoryProcessor processor, String url, Path output, @Nullable Path baseline,
+                           long largeTableRows, boolean strict) {
+        this.processor = processor;
+        this.parameterProcessor = new ParameterProcessor(processor);
+        this.url = url;
+        this.output = output;
+        this.baseline = baseline;
+        this.largeTableRows = largeTableRows;
+        this.strict = strict;
+    }
+
+    /**
+     * @param options processor options
+     * @return explainer, null if it is not enabled or options are wrong
+     */
+    public static @Nullable QueryExplainer fromOptions(RepositoryProcessor processor, Map<String, String> options) {
+        String url = options.get(RepositoryProcessor.EXPLAIN_URL_OPTION);
+        if (url == null || url.isBlank())
+            return null;
+        String output = options.get(RepositoryProcessor.EXPLAIN_OUTPUT_OPTION);
+        if (output == null || output.isBlank()) {
+            processor.error("Option " + RepositoryProcessor.EXPLAIN_OUTPUT_OPTION + " is needed to write query plans", null);
+            return null;
+        }
+        String baseline = options.get(RepositoryProcessor.EXPLAIN_BASELINE_OPTION);
+        long largeTableRows = DEFAULT_LARGE_TABLE_ROWS;
+        String largeTable = options.get(RepositoryProcessor.EXPLAIN_LARGE_TABLE_OPTION);
+        try {
+            if (largeTable != null && !largeTable.isBlank())
+                largeTableRows = Long.parseLong(largeTable.trim());
+        } catch (NumberFormatException e) {
+            processor.error("Option " + RepositoryProcessor.EXPLAIN_LARGE_TABLE_OPTION + " must be number", null);
+            return null;
+        }
+        return new QueryExplainer(processor, url.trim(), Path.of(output.trim()),
+                baseline == null || baseline.isBlank() ? null : Path.of(baseline.trim()),
+                largeTableRows, Boolean.parseBoolean(options.get(RepositoryProcessor.EXPLAIN_STRICT_OPTION)));
+    }
+
+    /**
+     * Explains queries of repository, writes their plans and compares them with baseline
+     * @param repository repository interface, that was processed without errors
+     */
+    public void explain(TypeElement repository) {
+        List<ExecutableElement> queries = this.processor.getMethodsWithAnnotation(repository, Query.class);
+        if (queries.isEmpty())
+            return;
+        Map<String, Plan> plans = new LinkedHashMap<>();
+        try (Connection connection = this.connect()) {
+            connection.setAutoCommit(false);
+            try {
+                this.runSchema(connection, repository);
+                for (ExecutableElement query : queries) {
+                    Plan plan = this.explain(connection, query);
+                    if (plan != null)
+                        plans.put(keyOf(query), plan);
+                }
+            } finally {
+                connection.rollback();
+            }
+        } catch (SQLException e) {
+            this.processor.warning("Queries were not explained, database " + this.url + " is not available: "
+                    + e.getMessage(), repository);
+            return;
+        }
+        String fileName = repository.getQualifiedName() + PLAN_FILE_EXTENSION;
+        try {
+            Files.createDirectories(this.output);
+            Files.writeString(this.output.resolve(fileName), format(plans));
+        } catch (IOException e) {
+            this.processor.warning("Failed to write query plans: " + e.getMessage(), repository);
+        }
+        this.compareWithBaseline(repository, queries, plans, fileName);
+    }
+
+    private Connection connect() throws SQLException {
+        // DriverManager does not see drivers of processor class loader
+        for (Driver driver : ServiceLoader.load(Driver.class, QueryExplainer.class.getClassLoader())) {
+            if (driver.acceptsURL(this.url)) {
+                Connection connection = driver.connect(this.url, new Properties());
+                if (!connection.getMetaData().getDatabaseProductName().equalsIgnoreCase("PostgreSQL")) {
+                    connection.close();
+                    throw new SQLException("only Postgres can explain queries with parameters");
+                }
+                return connection;
+            }
+        }
+        throw new SQLException("no driver for URL");
+    }
+
+    /**
+     * Tables of repository might not exist in local database
+     */
+    private void runSchema(Connection connection, TypeElement repository) throws SQLException {
+        Repository annotation = repository.getAnnotation(Repository.class);
+        for (String sql : annotation.value()) {
+            Savepoint savepoint = connection.setSavepoint();
+            try (Statement statement = connection.createStatement()) {
+                statement.execute(sql);
+            } catch (SQLException e) {
+                connection.rollback(savepoint);
+                this.processor.warning("Schema statement failed before explaining queries: " + e.getMessage(), repository);
+            }
+        }
+    }
+
+    private @Nullable Plan explain(Connection connection, ExecutableElement element) throws SQLException {
+        ProcessedQuery query = this.parameterProcessor.queryParametersFor(element, element.getAnnotation(Query.class).value());
+        List<String> lines = new ArrayList<>();
+        Savepoint savepoint = connection.setSavepoint();
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("EXPLAIN (GENERIC_PLAN) " + this.withBindMarkers(query))) {
+            while (rs.next())
+                lines.add(rs.getString(1));
+        } catch (SQLException e) {
+            connection.rollback(savepoint);
+            this.processor.warning("Query could not be explained: " + e.getMessage(), element);
+            return null;
+        }
+        for (String line : lines) {
+            Matcher matcher = SEQ_SCAN.matcher(line);
+            if (!matcher.find())
+                continue;
+            long rows = this.rowsOf(connection, matcher.group(1));
+            if (rows >= this.largeTableRows)
+                this.report("Query reads whole table " + matcher.group(1) + " (about " + rows + " rows):\n"
+                        + String.join("\n", lines), element);
+        }
+        return new Plan(query.sql().replaceAll("\\s+", " ").strip(),
+                lines.stream().map(l -> COST.matcher(l).replaceAll("")).toList());
+    }
+
+    /**
+     * @return rows in table, as estimated by database statistics, 0 if table is not analyzed
+     */
+    private long rowsOf(Connection connection, String table) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "SELECT GREATEST(reltuples, 0)::bigint FROM pg_class WHERE oid = to_regclass(?)")) {
+            statement.setString(1, table);
+            try (ResultSet rs = statement.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : 0;
+            }
+        }
+    }
+
+    /**
+     * Replaces ? placeholders with Postgres parameters, typed by parameter java type when it is known,
+     * so database does not need to guess type from context
+     */
+    private String withBindMarkers(ProcessedQuery query) {
+        StringBuilder sql = new StringBuilder();
+        char quote = 0;
+        int index = 0;
+        for (char c : query.sql().toCharArray()) {
+            if (quote != 0) {
+                if (c == quote)
+                    quote = 0;
+            } else if (c == '\'' || c == '"') {
+                quote = c;
+            } else if (c == '?') {
+                QueryParameter parameter = index < query.parameters().size() ? query.parameters().get(index) : null;
+                String type = parameter == null ? null : this.sqlTypeOf(parameter.type());
+                sql.append('$').append(++index);
+                if (type != null)
+                    sql.append("::").append(type);
+                continue;
+            }
+            sql.append(c);
+        }
+        return sql.toString();
+    }
+
+    private @Nullable String sqlTypeOf(@Nullable TypeMirror type) {
+        if (type == null)
+            return null;
+        if (type instanceof ArrayType array)
+            return array.getComponentType().getKind() == TypeKind.BYTE ? "bytea" : null;
+        TypeKind kind = type.getKind();
+        if (kind == TypeKind.DECLARED) {
+            try {
+                PrimitiveType unboxed = this.processor.getTypeUtils().unboxedType(type);
+                kind = unboxed.getKind();
+            } catch (IllegalArgumentException notBoxed) {
+                return this.sqlTypeOfDeclared(type);
+            }
+        }
+        return switch (kind) {
+            case BOOLEAN -> "boolean";
+            case BYTE, SHORT -> "smallint";
+            case INT -> "integer";
+            case LONG -> "bigint";
+            case FLOAT -> "real";
+            case DOUBLE -> "double precision";
+            case CHAR -> "text";
+            default -> null;
+        };
+    }
+
+    private @Nullable String sqlTypeOfDeclared(TypeMirror type) {
+        if (this.processor.isOfType(type, String.class))
+            return "text";
+        if (this.processor.isOfType(type, UUID.class))
+            return "uuid";
+        if (this.processor.isOfType(type, BigDecimal.class))
+            return "numeric";
+        if (this.processor.isOfType(type, LocalDate.class))
+            return "date";
+        if (this.processor.isOfType(type, LocalDateTime.class))
+            return "timestamp";
+        if (this.processor.isOfType(type, LocalTime.class))
+            return "time";
+        if (this.processor.isOfType(type, Instant.class))
+            return "timestamptz";
+        return null;
+    }
+
+    private void compareWithBaseline(TypeElement repository, List<ExecutableElement> queries, Map<String, Plan> plans,
+                                     String fileName) {
+        if (this.baseline == null)
+            return;
+        Path file = this.baseline.resolve(fileName);
+        if (!Files.exists(file)) {
+            this.processor.message("No baseline query plans for repository, copy " + this.output.resolve(fileName)
+                    + " to " + file + " to add them", repository);
+            return;
+        }
+        Map<String, Plan> expected;
+        try {
+            expected = parse(Files.readAllLines(file));
+        } catch (IOException e) {
+            this.processor.warning("Failed to read baseline query plans: " + e.getMessage(), repository);
+            return;
+        }
+        for (ExecutableElement query : queries) {
+            Plan plan = plans.get(keyOf(query));
+            Plan previous = expected.get(keyOf(query));
+            if (plan == null || previous == null || plan.lines().equals(previous.lines()))
+                continue;
+            this.report("Query plan differs from baseline " + file + ", was:\n" + String.join("\n", previous.lines())
+                    + "\nnow:\n" + String.join("\n", plan.lines()), query);
+        }
+    }
+
+    private void report(String message, ExecutableElement element) {
+        if (this.strict)
+            this.processor.error(message, element);
+        else
+            this.processor.warning(message, element);
+    }
+
+    /**
+     * @return method name with parameter types, so overloads have own plans
+     */
+    private static String keyOf(ExecutableElement element) {
+        return element.getSimpleName() + element.getParameters().stream()
+                .map(p -> p.asType().toString())
+                .collect(Collectors.joining(", ", "(", ")"));
+    }
+
+    /**
+     * Plan of every method starts with method and SQL as comments, plans are separated by empty line
+     */
+    private static String format(Map<String, Plan> plans) {
+        StringBuilder text = new StringBuilder();
+        plans.forEach((key, plan) -> {
+            text.append(COMMENT).append(key).append('\n')
+                    .append(COMMENT).append(plan.sql()).append('\n');
+            plan.lines().forEach(line -> text.append(line).append('\n'));
+            text.append('\n');
+        });
+        return text.toString();
+    }
+
+    private static Map<String, Plan> parse(List<String> lines) {
+        Map<String, Plan> plans = new LinkedHashMap<>();
+        int i = 0;
+        while (i < lines.size()) {
+            if (lines.get(i).isBlank() || i + 1 >= lines.size()) {
+                i++;
+                continue;
+            }
+            String key = lines.get(i).substring(Math.min(COMMENT.length(), lines.get(i).length()));
+            String sql = lines.get(i + 1).substring(Math.min(COMMENT.length(), lines.get(i + 1).length()));
+            List<String> plan = new ArrayList<>();
+            i += 2;
+            while (i < lines.size() && !lines.get(i).isBlank())
+                plan.add(lines.get(i++));
+            plans.put(key, new Plan(sql, plan));
+        }
+        return plans;
+    }
+
+    /**
+     * @param sql query on one line
+     * @param lines plan without costs
+     */
+    private record Plan(String sql, List<String> lines) {}
+}
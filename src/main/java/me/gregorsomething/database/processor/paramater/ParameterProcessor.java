@@ -1,24 +1,42 @@
 package me.gregorsomething.database.processor.paramater;
 
+import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.TypeName;
 import lombok.RequiredArgsConstructor;
+import me.gregorsomething.database.BatchBinder;
+import me.gregorsomething.database.StatementBinder;
+import me.gregorsomething.database.annotations.Redacted;
 import me.gregorsomething.database.processor.RepositoryProcessor;
-import me.gregorsomething.database.processor.helpers.Pair;
+import org.jetbrains.annotations.Nullable;
 
 import javax.lang.model.element.Element;
 import javax.lang.model.element.ExecutableElement;
 import javax.lang.model.element.Modifier;
 import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.PrimitiveType;
 import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
 import javax.lang.model.util.ElementFilter;
+import java.sql.Date;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
 import java.util.*;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
-import java.util.stream.Collectors;
 
 @RequiredArgsConstructor
 public class ParameterProcessor {
 
     private static final Pattern PLACEHOLDER_REGEX = Pattern.compile("\\[\\([^\\[]+\\)]");
+    /**
+     * Prepared statement parameter of generated binders, names with $ can not clash with names of method parameters
+     */
+    public static final String STATEMENT_VARIABLE = "$ps";
 
     private final RepositoryProcessor processor;
 
@@ -35,24 +53,199 @@ public class ParameterProcessor {
      * Processes sql query
      * @param element element for what query is about
      * @param sqlQuery sql query or statement
-     * @return SQL query string after processing and parameters seperated by coma, including first
+     * @return SQL query string after processing and parameters for it
      */
-    public Pair<String, String> queryParametersFor(ExecutableElement element, String sqlQuery) {
+    public ProcessedQuery queryParametersFor(ExecutableElement element, String sqlQuery) {
+        return this.queryParametersFor(element, sqlQuery, this.variablesOf(element));
+    }
+
+    /**
+     * Processes sql statement that is executed once for every item of batch parameter,
+     * placeholders referencing batch parameter are resolved against item type
+     * @param element element for what statement is about
+     * @param sqlQuery sql statement
+     * @param batchParameter collection parameter
+     * @param itemType type of items in collection
+     * @param itemName name of variable that holds current item in generated code
+     * @return SQL statement string after processing and parameters for it
+     */
+    public ProcessedQuery batchQueryParametersFor(ExecutableElement element, String sqlQuery, VariableElement batchParameter,
+                                                  TypeMirror itemType, String itemName) {
+        Map<String, BoundVariable> variables = this.variablesOf(element);
+        variables.put(batchParameter.getSimpleName().toString(), new BoundVariable(itemName, itemType,
+                batchParameter.getAnnotation(Redacted.class) != null));
+        return this.queryParametersFor(element, sqlQuery, variables);
+    }
+
+    private ProcessedQuery queryParametersFor(ExecutableElement element, String sqlQuery, Map<String, BoundVariable> variables) {
         List<String> replaceable = this.findReplaceable(sqlQuery);
 
         if (replaceable.isEmpty()) {
-            return this.queryParametersDirectlyFromElement(element, sqlQuery);
+            return this.queryParametersDirectlyFromElement(sqlQuery, variables);
         }
         if (sqlQuery.contains("?")) {
             this.processor.error("If query has [(...)] parameter it must not contain ? parameters", element);
         }
-        return this.queryParametersFromElementProcessing(element, sqlQuery, replaceable);
+        return this.queryParametersFromElementProcessing(element, sqlQuery, replaceable, variables);
+    }
+
+    /**
+     * @return method parameters by their names, in order they are declared
+     */
+    private Map<String, BoundVariable> variablesOf(ExecutableElement element) {
+        Map<String, BoundVariable> variables = new LinkedHashMap<>();
+        for (VariableElement parameter : element.getParameters()) {
+            String name = parameter.getSimpleName().toString();
+            variables.put(name, new BoundVariable(name, parameter.asType(), parameter.getAnnotation(Redacted.class) != null));
+        }
+        return variables;
+    }
+
+    /**
+     * Makes binder lambda that sets query parameters with setters matching their types,
+     * parameters with unknown type are set with setObject
+     * @param query processed query
+     * @return code for {@link StatementBinder}
+     */
+    public CodeBlock binderFor(ProcessedQuery query) {
+        return this.binderFor(query, CodeBlock.of(""));
+    }
+
+    /**
+     * Same as {@link #binderFor(ProcessedQuery)}, but binder also applies statement settings
+     * @param query processed query
+     * @param settings statements that configure prepared statement {@link #STATEMENT_VARIABLE}, like {@code $ps.setMaxRows(1);}
+     * @return code for {@link StatementBinder}
+     */
+    public CodeBlock binderFor(ProcessedQuery query, CodeBlock settings) {
+        if (query.parameters().isEmpty() && settings.isEmpty())
+            return CodeBlock.of("$T.NONE", StatementBinder.class);
+        return this.binderLambda(CodeBlock.of("$L", STATEMENT_VARIABLE), query, settings);
+    }
+
+    /**
+     * Same as {@link #binderFor(ProcessedQuery)}, but for {@link BatchBinder}
+     * @param query query processed with {@link #batchQueryParametersFor}
+     * @param itemName name of item variable used in processing
+     * @return code for {@link BatchBinder}
+     */
+    public CodeBlock batchBinderFor(ProcessedQuery query, String itemName) {
+        return this.binderLambda(CodeBlock.of("($L, $L)", STATEMENT_VARIABLE, itemName), query, CodeBlock.of(""));
+    }
+
+    private CodeBlock binderLambda(CodeBlock lambdaParameters, ProcessedQuery query, CodeBlock settings) {
+        CodeBlock.Builder code = CodeBlock.builder().add("$L -> {\n", lambdaParameters).indent();
+        code.add(settings);
+        for (int i = 0; i < query.parameters().size(); i++) {
+            this.addBindStatement(code, i + 1, query.parameters().get(i));
+        }
+        return code.unindent().add("}").build();
+    }
+
+    private void addBindStatement(CodeBlock.Builder code, int index, QueryParameter parameter) {
+        TypeMirror type = parameter.type();
+        String expression = parameter.expression();
+        if (type == null) {
+            code.addStatement("$L.setObject($L, $L)", STATEMENT_VARIABLE, index, expression);
+            return;
+        }
+        if (type.getKind().isPrimitive()) {
+            if (type.getKind().equals(TypeKind.CHAR))
+                code.addStatement("$L.setString($L, $T.valueOf($L))", STATEMENT_VARIABLE, index, String.class, expression);
+            else
+                code.addStatement("$L.$L($L, $L)", STATEMENT_VARIABLE, this.getSetterForPrimitive(type.getKind()), index, expression);
+            return;
+        }
+        if (this.processor.isOfType(type, String.class)) {
+            code.addStatement("$L.setString($L, $L)", STATEMENT_VARIABLE, index, expression);
+            return;
+        }
+        String variable = "$bind" + index;
+        Class<?> conversion = this.getTimeConversion(type);
+        if (conversion != null) {
+            code.addStatement("$T $L = $L", TypeName.get(type), variable, expression)
+                    .addStatement("$L.$L($L, $L == null ? null : $L)", STATEMENT_VARIABLE, this.getTimeSetter(type), index, variable,
+                            CodeBlock.of("$T.$L($L)", conversion, this.getTimeConversionMethod(type), variable));
+            return;
+        }
+        PrimitiveType unboxed = this.unboxedOrNull(type);
+        if (unboxed == null || unboxed.getKind().equals(TypeKind.CHAR)) {
+            code.addStatement("$L.setObject($L, $L)", STATEMENT_VARIABLE, index, expression);
+            return;
+        }
+        code.addStatement("$T $L = $L", TypeName.get(type), variable, expression)
+                .beginControlFlow("if ($L == null)", variable)
+                .addStatement("$L.setNull($L, $T.$L)", STATEMENT_VARIABLE, index, Types.class, this.getSqlTypeForPrimitive(unboxed.getKind()))
+                .nextControlFlow("else")
+                .addStatement("$L.$L($L, $L)", STATEMENT_VARIABLE, this.getSetterForPrimitive(unboxed.getKind()), index, variable)
+                .endControlFlow();
+    }
+
+    private @Nullable PrimitiveType unboxedOrNull(TypeMirror type) {
+        try {
+            return this.processor.getTypeUtils().unboxedType(type);
+        } catch (IllegalArgumentException ignored) {
+            return null;
+        }
+    }
+
+    private String getSetterForPrimitive(TypeKind kind) {
+        return switch (kind) {
+            case BOOLEAN -> "setBoolean";
+            case BYTE -> "setByte";
+            case SHORT -> "setShort";
+            case INT -> "setInt";
+            case LONG -> "setLong";
+            case FLOAT -> "setFloat";
+            case DOUBLE -> "setDouble";
+            default -> throw new IllegalArgumentException("No setter for primitive " + kind);
+        };
+    }
+
+    private String getSqlTypeForPrimitive(TypeKind kind) {
+        return switch (kind) {
+            case BOOLEAN -> "BOOLEAN";
+            case BYTE -> "TINYINT";
+            case SHORT -> "SMALLINT";
+            case INT -> "INTEGER";
+            case LONG -> "BIGINT";
+            case FLOAT -> "REAL";
+            case DOUBLE -> "DOUBLE";
+            default -> throw new IllegalArgumentException("No sql type for primitive " + kind);
+        };
+    }
+
+    /**
+     * Time types are set as their java.sql counterparts, same as they are read in TypeMapperResolver
+     * @return java.sql type that has static conversion method, null if type is not time type
+     */
+    private @Nullable Class<?> getTimeConversion(TypeMirror type) {
+        if (this.processor.isOfType(type, LocalDateTime.class) || this.processor.isOfType(type, Instant.class))
+            return Timestamp.class;
+        if (this.processor.isOfType(type, LocalDate.class))
+            return Date.class;
+        if (this.processor.isOfType(type, LocalTime.class))
+            return Time.class;
+        return null;
+    }
+
+    private String getTimeConversionMethod(TypeMirror type) {
+        return this.processor.isOfType(type, Instant.class) ? "from" : "valueOf";
+    }
+
+    private String getTimeSetter(TypeMirror type) {
+        if (this.processor.isOfType(type, LocalDate.class))
+            return "setDate";
+        if (this.processor.isOfType(type, LocalTime.class))
+            return "setTime";
+        return "setTimestamp";
     }
 
     /**
      * Processes [(...)] to usable formats
      */
-    private Pair<String, String> queryParametersFromElementProcessing(ExecutableElement element, String query, List<String> toProcess) {
+    private ProcessedQuery queryParametersFromElementProcessing(ExecutableElement element, String query, List<String> toProcess,
+                                                                Map<String, BoundVariable> variables) {
         String newQuery = removePlaceholders(query);
 
         if (element.getParameters().isEmpty()) {
@@ -60,79 +253,92 @@ public class ParameterProcessor {
             throw new UnsupportedOperationException("Processing terminated, no parameters");
         }
 
-        Map<String, List<Pair<String, String>>> foundElements = new HashMap<>();
-        for (VariableElement parameter : element.getParameters()) {
-            foundElements.put(parameter.getSimpleName().toString(), this.getPublicVariables(parameter));
-        }
-        List<String> mappingsForProcessed = new ArrayList<>();
+        Map<String, List<Accessor>> foundElements = new HashMap<>();
+        variables.forEach((name, variable) -> foundElements.put(name, this.getPublicVariables(variable.type())));
+        List<QueryParameter> mappingsForProcessed = new ArrayList<>();
         for (String process : toProcess) {
-            mappingsForProcessed.add(this.findAndResolveMappingFor(foundElements, process));
+            mappingsForProcessed.add(this.findAndResolveMappingFor(variables, foundElements, process));
         }
 
-        return Pair.of(newQuery, mappingsForProcessed.stream().map(s -> ", " + s).collect(Collectors.joining()));
+        return new ProcessedQuery(newQuery, mappingsForProcessed);
     }
 
-    private String findAndResolveMappingFor(Map<String, List<Pair<String, String>>> foundElements, String process) {
-        if (!process.contains("."))
-            return process;
+    private QueryParameter findAndResolveMappingFor(Map<String, BoundVariable> variables,
+                                                    Map<String, List<Accessor>> foundElements, String process) {
+        if (!process.contains(".")) {
+            BoundVariable variable = variables.get(process);
+            if (variable == null)
+                return new QueryParameter(process, null);
+            return new QueryParameter(variable.code(), this.knownTypeOrNull(variable.type()), variable.redacted());
+        }
         String[] split = process.split("\\.");
+        BoundVariable variable = variables.get(split[0]);
+        if (variable == null)
+            return new QueryParameter(process, null);
+        // Variable might be named differently in generated code
+        String expression = variable.code() + process.substring(split[0].length());
         // If not expected value return
         if (split.length != 2) {
-            return process;
+            return new QueryParameter(expression, null, variable.redacted());
         }
 
-        if (!foundElements.containsKey(split[0]))
-            return process;
-        Optional<Pair<String, String>> pair = foundElements.get(split[0]).stream()
-                .filter(p -> p.left().equals(split[1]))
+        Optional<Accessor> accessor = foundElements.get(split[0]).stream()
+                .filter(p -> p.name().equals(split[1]))
                 .findFirst();
-        return pair.map(p -> split[0] + "." + p.right()).orElse(process);
+        return accessor.map(a -> new QueryParameter(variable.code() + "." + a.code(), this.knownTypeOrNull(a.type()),
+                        variable.redacted()))
+                .orElse(new QueryParameter(expression, null, variable.redacted()));
+    }
+
+    /**
+     * Type variables can not be bound with typed setter, as actual type is not known here
+     */
+    private @Nullable TypeMirror knownTypeOrNull(TypeMirror type) {
+        return type.getKind().equals(TypeKind.TYPEVAR) ? null : type;
     }
 
-    private List<Pair<String, String>> getPublicVariables(VariableElement parameter) {
-        Element element = this.processor.getTypeUtils().asElement(parameter.asType());
+    private List<Accessor> getPublicVariables(TypeMirror type) {
+        Element element = this.processor.getTypeUtils().asElement(type);
         if (element == null) return List.of();
-        List<Pair<String, String>> res = new ArrayList<>();
+        List<Accessor> res = new ArrayList<>();
         if (element.getKind().isClass() || element.getKind().isInterface()) {
-            List<ExecutableElement> methods = ElementFilter.methodsIn(element.getEnclosedElements());
-            List<String> list = methods.stream()
+            List<ExecutableElement> methods = ElementFilter.methodsIn(element.getEnclosedElements()).stream()
                     .filter(m ->
                             !m.getModifiers().contains(Modifier.PRIVATE)
                                     && !m.getModifiers().contains(Modifier.PROTECTED)
                                     && !m.getModifiers().contains(Modifier.STATIC))
                     .filter(m -> !m.getReturnType().getKind().equals(TypeKind.VOID))
                     .filter(m -> m.getParameters().isEmpty())
-                    .map(m -> m.getSimpleName().toString())
                     .toList();
-            list.forEach(name -> {
+            methods.forEach(method -> {
+                final String name = method.getSimpleName().toString();
                 final String methodName = name + "()";
-                res.add(Pair.of(name, methodName));
-                res.add(Pair.of(name + "()", methodName));
+                final TypeMirror type = method.getReturnType();
+                res.add(new Accessor(name, methodName, type));
+                res.add(new Accessor(name + "()", methodName, type));
                 String nameWithoutGet = name.replaceFirst("get", "");
-                res.add(Pair.of(nameWithoutGet, methodName));
-                res.add(Pair.of(nameWithoutGet.toLowerCase(Locale.ROOT), methodName));
+                res.add(new Accessor(nameWithoutGet, methodName, type));
+                res.add(new Accessor(nameWithoutGet.toLowerCase(Locale.ROOT), methodName, type));
             });
         }
         if (element.getKind().isClass()) {
-            List<VariableElement> elements = ElementFilter.fieldsIn(element.getEnclosedElements());
-            List<String> list = elements.stream()
+            ElementFilter.fieldsIn(element.getEnclosedElements()).stream()
                     .filter(m ->
                             !m.getModifiers().contains(Modifier.PRIVATE)
                                     && !m.getModifiers().contains(Modifier.PROTECTED)
                                     && !m.getModifiers().contains(Modifier.STATIC))
-                    .map(m -> m.getSimpleName().toString())
-                    .toList();
-            list.forEach(name -> res.add(Pair.of(name, name)));
+                    .forEach(field -> res.add(new Accessor(field.getSimpleName().toString(),
+                            field.getSimpleName().toString(), field.asType())));
         }
         return res;
     }
 
-    private Pair<String, String> queryParametersDirectlyFromElement(ExecutableElement element, String query) {
-        StringBuilder args = new StringBuilder();
-        for (VariableElement parameter : element.getParameters()) {
-            args.append(", ").append(parameter.getSimpleName().toString());
+    private ProcessedQuery queryParametersDirectlyFromElement(String query, Map<String, BoundVariable> variables) {
+        List<QueryParameter> parameters = new ArrayList<>();
+        for (BoundVariable variable : variables.values()) {
+            parameters.add(new QueryParameter(variable.code(), this.knownTypeOrNull(variable.type()), variable.redacted()));
         }
-        return Pair.of(query, args.toString());
+        return new ProcessedQuery(query, parameters);
     }
 
     private List<String> findReplaceable(String query) {
@@ -147,4 +353,20 @@ public class ParameterProcessor {
                 .map(s -> s.substring(2, s.length() - 2).strip())
                 .toList();
     }
+
+    /**
+     * Way to read value from parameter
+     * @param name name used in placeholder
+     * @param code java code to read it, without parameter name
+     * @param type type of read value
+     */
+    private record Accessor(String name, String code, TypeMirror type) { }
+
+    /**
+     * Variable that placeholders can reference
+     * @param code name of variable in generated code
+     * @param type type of variable
+     * @param redacted if values from variable must not be logged
+     */
+    private record BoundVariable(String code, TypeMirror type, boolean redacted) { }
 }
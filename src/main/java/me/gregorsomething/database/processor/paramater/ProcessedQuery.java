@@ -0,0 +1,32 @@
+package me.gregorsomething.database.processor.paramater;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * SQL query after placeholders are replaced with '?'
+ * @param sql query with '?' placeholders
+ * @param parameters values for placeholders, in order
+ */
+public record ProcessedQuery(String sql, List<QueryParameter> parameters) {
+
+    /**
+     * @return parameter expressions seperated by coma, including first, e.g. ", id, name"
+     */
+    public String argumentList() {
+        return this.parameters.stream()
+                .map(p -> ", " + p.expression())
+                .collect(Collectors.joining());
+    }
+
+    /**
+     * @return indexes of redacted placeholders, starting from 1
+     */
+    public int[] redactedIndexes() {
+        return IntStream.range(0, this.parameters.size())
+                .filter(i -> this.parameters.get(i).redacted())
+                .map(i -> i + 1)
+                .toArray();
+    }
+}
@@ -0,0 +1,18 @@
+package me.gregorsomething.database.processor.paramater;
+
+import org.jetbrains.annotations.Nullable;
+
+import javax.lang.model.type.TypeMirror;
+
+/**
+ * Value set to one placeholder of query
+ * @param expression java code that gives value
+ * @param type type of value, null if processor could not resolve it
+ * @param redacted if value comes from {@link me.gregorsomething.database.annotations.Redacted} parameter
+ */
+public record QueryParameter(String expression, @Nullable TypeMirror type, boolean redacted) {
+
+    public QueryParameter(String expression, @Nullable TypeMirror type) {
+        this(expression, type, false);
+    }
+}
@@ -0,0 +1,56 @@
+package me.gregorsomething.database.processor.schema;
+
+import net.sf.jsqlparser.JSQLParserException;
+import net.sf.jsqlparser.parser.CCJSqlParserUtil;
+import net.sf.jsqlparser.statement.Statement;
+import net.sf.jsqlparser.statement.create.table.ColumnDefinition;
+import net.sf.jsqlparser.statement.create.table.CreateTable;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Columns of tables known at compile time, read from CREATE TABLE statements
+ * of schema file and repositories.
+ */
+public class SchemaSnapshot {
+    private final Map<String, List<String>> tables = new HashMap<>();
+
+    /**
+     * Reads tables from DDL, statements other than CREATE TABLE are skipped
+     * @param ddl one or more SQL statements
+     * @throws JSQLParserException if DDL can not be parsed
+     */
+    public void addDdl(String ddl) throws JSQLParserException {
+        for (Statement statement : CCJSqlParserUtil.parseStatements(ddl)) {
+            if (statement instanceof CreateTable createTable && createTable.getColumnDefinitions() != null) {
+                this.tables.put(normalize(createTable.getTable().getName()), createTable.getColumnDefinitions().stream()
+                        .map(ColumnDefinition::getColumnName)
+                        .map(SchemaSnapshot::unquote)
+                        .toList());
+            }
+        }
+    }
+
+    /**
+     * @param table table name, without schema
+     * @return columns in order they were declared, null if table is not known
+     */
+    public @Nullable List<String> columnsOf(String table) {
+        return this.tables.get(normalize(table));
+    }
+
+    public static String unquote(String name) {
+        return name.replaceAll("['\"`]", "");
+    }
+
+    /**
+     * Names are compared case-insensitive and without quotes
+     */
+    public static String normalize(String name) {
+        return unquote(name).toLowerCase(Locale.ROOT);
+    }
+}
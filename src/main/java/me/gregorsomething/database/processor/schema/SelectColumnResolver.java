@@ -0,0 +1,131 @@
+package me.gregorsomething.database.processor.schema;
+
+import lombok.RequiredArgsConstructor;
+import net.sf.jsqlparser.expression.Expression;
+import net.sf.jsqlparser.schema.Column;
+import net.sf.jsqlparser.schema.Table;
+import net.sf.jsqlparser.statement.select.*;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Finds names of columns select returns, wildcards are expanded using {@link SchemaSnapshot},
+ * common table expressions and subqueries are resolved recursively, set operations take names of first select.
+ */
+@RequiredArgsConstructor
+public class SelectColumnResolver {
+    private final SchemaSnapshot schema;
+
+    /**
+     * @param select parsed select
+     * @return column names in order they are returned, empty if some of them can not be known at compile time
+     */
+    public Optional<List<String>> columnsOf(Select select) {
+        return Optional.ofNullable(this.columnsOf(select, Map.of()));
+    }
+
+    private @Nullable List<String> columnsOf(Select select, Map<String, List<String>> outerCtes) {
+        Map<String, List<String>> ctes = this.withCtes(select, outerCtes);
+        if (select instanceof ParenthesedSelect parenthesed)
+            return this.columnsOf(parenthesed.getSelect(), ctes);
+        if (select instanceof SetOperationList setOperation)
+            return setOperation.getSelects().isEmpty() ? null : this.columnsOf(setOperation.getSelects().getFirst(), ctes);
+        if (select instanceof PlainSelect plain)
+            return this.plainColumns(plain, ctes);
+        return null;
+    }
+
+    /**
+     * @return visible common table expressions by name, value is null when columns of it are not known
+     */
+    private Map<String, List<String>> withCtes(Select select, Map<String, List<String>> outerCtes) {
+        if (select.getWithItemsList() == null || select.getWithItemsList().isEmpty())
+            return outerCtes;
+        Map<String, List<String>> ctes = new HashMap<>(outerCtes);
+        for (var with : select.getWithItemsList()) {
+            List<String> columns;
+            if (with.getWithItemList() != null && !with.getWithItemList().isEmpty()) {
+                columns = new ArrayList<>();
+                for (var item : with.getWithItemList())
+                    columns.add(SchemaSnapshot.unquote(item.getExpression().toString()));
+            } else {
+                columns = this.columnsOf(with.getSelect(), ctes);
+            }
+            ctes.put(SchemaSnapshot.normalize(with.getAlias().getName()), columns);
+        }
+        return ctes;
+    }
+
+    private @Nullable List<String> plainColumns(PlainSelect select, Map<String, List<String>> ctes) {
+        List<Source> sources = new ArrayList<>();
+        boolean mergesColumns = false;
+        if (select.getFromItem() != null)
+            sources.add(this.sourceOf(select.getFromItem(), ctes));
+        if (select.getJoins() != null) {
+            for (Join join : select.getJoins()) {
+                sources.add(this.sourceOf(join.getRightItem(), ctes));
+                // These return joined columns once, so wildcard is not just concatenation of tables
+                mergesColumns |= join.isNatural() || (join.getUsingColumns() != null && !join.getUsingColumns().isEmpty());
+            }
+        }
+
+        List<String> result = new ArrayList<>();
+        for (SelectItem<?> item : select.getSelectItems()) {
+            Expression expression = item.getExpression();
+            if (expression instanceof AllTableColumns tableColumns) {
+                Source source = this.findSource(sources, tableColumns.getTable().getName());
+                if (source == null || source.columns() == null)
+                    return null;
+                result.addAll(source.columns());
+            } else if (expression instanceof AllColumns) {
+                if (mergesColumns || sources.isEmpty())
+                    return null;
+                for (Source source : sources) {
+                    if (source.columns() == null)
+                        return null;
+                    result.addAll(source.columns());
+                }
+            } else if (item.getAlias() != null) {
+                result.add(SchemaSnapshot.unquote(item.getAlias().getName()));
+            } else if (expression instanceof Column column) {
+                result.add(SchemaSnapshot.unquote(column.getColumnName()));
+            } else {
+                // Name is given by database
+                return null;
+            }
+        }
+        return result;
+    }
+
+    private Source sourceOf(FromItem item, Map<String, List<String>> ctes) {
+        String alias = item.getAlias() == null ? null : SchemaSnapshot.normalize(item.getAlias().getName());
+        if (item instanceof Table table) {
+            String name = SchemaSnapshot.normalize(table.getName());
+            List<String> columns = ctes.containsKey(name) ? ctes.get(name) : this.schema.columnsOf(name);
+            return new Source(alias == null ? name : alias, columns);
+        }
+        if (item instanceof ParenthesedSelect subquery)
+            return new Source(alias, this.columnsOf(subquery, ctes));
+        return new Source(alias, null);
+    }
+
+    private @Nullable Source findSource(List<Source> sources, String name) {
+        String normalized = SchemaSnapshot.normalize(name);
+        return sources.stream()
+                .filter(s -> normalized.equals(s.name()))
+                .findFirst()
+                .orElse(null);
+    }
+
+    /**
+     * Table, subquery or common table expression select reads from
+     * @param name alias or table name, null if subquery has no alias
+     * @param columns columns of source, null if not known
+     */
+    private record Source(@Nullable String name, @Nullable List<String> columns) {}
+}
@@ -0,0 +1,76 @@
+package me.gregorsomething.database.processor.schema;
+
+import net.sf.jsqlparser.JSQLParserException;
+import net.sf.jsqlparser.parser.CCJSqlParserUtil;
+import net.sf.jsqlparser.statement.Statement;
+import net.sf.jsqlparser.statement.select.Select;
+import net.sf.jsqlparser.util.TablesNamesFinder;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Tables SQL reads and writes, found at compile time. Null set means tables are not known,
+ * so SQL is assumed to touch every table. Tables are compared by name without schema.
+ * @param reads tables SQL reads
+ * @param writes tables SQL changes, empty for plain selects
+ */
+public record TableAccess(@Nullable Set<String> reads, @Nullable Set<String> writes) {
+
+    /**
+     * Queries that can not be parsed are assumed to read every table and change none
+     * @param sql SQL with ? placeholders
+     */
+    public static TableAccess ofQuery(String sql) {
+        try {
+            return of(CCJSqlParserUtil.parse(sql), sql);
+        } catch (JSQLParserException | RuntimeException e) {
+            return new TableAccess(null, Set.of());
+        }
+    }
+
+    /**
+     * Statements that can not be parsed are assumed to change every table
+     * @param sql SQL with ? placeholders
+     */
+    public static TableAccess ofStatement(String sql) {
+        try {
+            return of(CCJSqlParserUtil.parse(sql), sql);
+        } catch (JSQLParserException | RuntimeException e) {
+            return new TableAccess(null, null);
+        }
+    }
+
+    /**
+     * Tables of statements are not split to written and only read ones, for example INSERT ... SELECT
+     * is taken as writing to both tables, that only invalidates more than needed
+     */
+    private static TableAccess of(Statement statement, String sql) throws JSQLParserException {
+        Set<String> tables = TablesNamesFinder.findTables(sql).stream()
+                .map(TableAccess::withoutSchema)
+                .collect(Collectors.toUnmodifiableSet());
+        if (statement instanceof Select)
+            return new TableAccess(tables, Set.of());
+        // Like CALL, which can change anything
+        if (tables.isEmpty())
+            return new TableAccess(null, null);
+        return new TableAccess(tables, tables);
+    }
+
+    /**
+     * @return true if changes made by this SQL can change result of reader
+     */
+    public boolean invalidates(TableAccess reader) {
+        if (this.writes != null && this.writes.isEmpty())
+            return false;
+        if (this.writes == null || reader.reads == null)
+            return true;
+        return !Collections.disjoint(this.writes, reader.reads);
+    }
+
+    private static String withoutSchema(String table) {
+        return SchemaSnapshot.normalize(table.substring(table.lastIndexOf('.') + 1));
+    }
+}
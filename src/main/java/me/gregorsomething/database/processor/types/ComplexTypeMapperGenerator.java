@@ -1,23 +1,29 @@
 package me.gregorsomething.database.processor.types;
 
+import com.squareup.javapoet.ClassName;
 import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.FieldSpec;
 import com.squareup.javapoet.MethodSpec;
 import com.squareup.javapoet.ParameterSpec;
+import com.squareup.javapoet.ParameterizedTypeName;
 import com.squareup.javapoet.TypeName;
 import lombok.RequiredArgsConstructor;
+import me.gregorsomething.database.ColumnPlan;
+import me.gregorsomething.database.IntObjectMap;
+import me.gregorsomething.database.LongObjectMap;
 import me.gregorsomething.database.processor.RepositoryProcessor;
-import me.gregorsomething.database.processor.helpers.ElementUtils;
-import me.gregorsomething.database.processor.helpers.Pair;
 
-import javax.lang.model.element.ExecutableElement;
 import javax.lang.model.element.Modifier;
-import javax.lang.model.element.VariableElement;
-import javax.lang.model.type.TypeMirror;
+import javax.lang.model.element.TypeElement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.Objects;
+import java.util.Set;
 
 @RequiredArgsConstructor
 public class ComplexTypeMapperGenerator {
@@ -26,31 +32,108 @@ public class ComplexTypeMapperGenerator {
     private final TypeMapperResolver typeMapperResolver;
 
     /**
-     * Makes new mapper method on repository class
+     * Makes new mapper method on repository class, nested objects are read in same method
+     * @param byLabels if columns of mapping are {@code $columns[i]}, found by their labels from result set metadata,
+     *                 used when selected columns are not known at compile time
      */
-    public void generateMapperMethodForTypeWithConstructor(TypeMirror returnType, List<Pair<Integer, String>> selectedItems,
-                                                           String methodName, ExecutableElement constructor) {
-        MethodSpec.Builder method = this.generateMethodHeadFor(methodName, returnType);
-        CodeBlock.Builder code = CodeBlock.builder();
-        this.readParametersToVariables(selectedItems, constructor.getParameters(), returnType, code);
-        this.addConstructorCallAndReturn(code, returnType, constructor);
+    public void generateMapperMethod(String methodName, ObjectMapping mapping, boolean byLabels) {
+        MethodSpec.Builder method = this.generateMethodHeadFor(methodName, TypeName.get(mapping.type()));
+        CodeBlock.Builder code = this.startMapperCode(methodName, mapping, byLabels);
+        code.addStatement("return $L", this.readObject(code, mapping, "", Set.of()));
         method.addCode(code.build());
         this.typeMapperResolver.getCurrentRepoBuilder().addMethod(method.build());
     }
 
-    public void generateMapperMethodForTypeWithStaticMethod(TypeMirror returnType, List<Pair<Integer, String>> selectedItems,
-                                                           String methodName, ExecutableElement staticMethod) {
-        MethodSpec.Builder method = this.generateMethodHeadFor(methodName, returnType);
-        CodeBlock.Builder code = CodeBlock.builder();
-        this.readParametersToVariables(selectedItems, staticMethod.getParameters(), returnType, code);
-        this.addStaticMethodCallAndReturn(code, returnType, staticMethod);
+    /**
+     * Makes new mapper method on repository class, that reads all rows of one-to-many join to list.
+     * Rows are grouped by key, object is made from first row of key, and every row adds element to its collection.
+     * Rows of same key are usually consecutive, so map is only looked up when key changes.
+     * @param key parameter that identifies object, read from one column
+     */
+    public void generateGroupingMapperMethod(String methodName, ObjectMapping mapping, ObjectMapping.Parameter key,
+                                             boolean byLabels) {
+        ObjectMapping.Parameter collection = Objects.requireNonNull(mapping.collection());
+        TypeName type = TypeName.get(mapping.type());
+        TypeName keyType = TypeName.get(key.type());
+        TypeName elementType = TypeName.get(collection.elementType());
+        TypeName elementList = ParameterizedTypeName.get(ClassName.get(List.class), elementType);
+        boolean primitiveKey = keyType.equals(TypeName.INT) || keyType.equals(TypeName.LONG);
+        Class<?> primitiveMap = keyType.equals(TypeName.INT) ? IntObjectMap.class : LongObjectMap.class;
+
+        MethodSpec.Builder method = this.generateMethodHeadFor(methodName,
+                ParameterizedTypeName.get(ClassName.get(List.class), type));
+        CodeBlock.Builder code = this.startMapperCode(methodName, mapping, byLabels);
+        code.addStatement("$T<$T> $$list = new $T<>()", List.class, type, ArrayList.class);
+        if (primitiveKey) {
+            code.addStatement("$T<$T> $$groups = new $T<>()", primitiveMap, elementList, primitiveMap)
+                    .addStatement("$T $$lastKey = 0", keyType);
+        } else {
+            code.addStatement("$T<$T, $T> $$groups = new $T<>()", Map.class, keyType.box(), elementList, HashMap.class)
+                    .addStatement("$T $$lastKey = null", keyType);
+        }
+        code.addStatement("$T $L = null", elementList, collection.name());
+        code.beginControlFlow("while (rs.next())");
+        this.typeMapperResolver.readToVariable(code, key.column(), key.name(), key.type());
+        code.beginControlFlow(primitiveKey ? "if ($L == null || $L != $$lastKey)" : "if ($L == null || !$T.equals($L, $$lastKey))",
+                        collection.name(), primitiveKey ? key.name() : Objects.class, key.name())
+                .addStatement("$$lastKey = $L", key.name())
+                .addStatement("$L = $$groups.get($L)", collection.name(), key.name())
+                .beginControlFlow("if ($L == null)", collection.name())
+                .addStatement("$L = new $T<>()", collection.name(), ArrayList.class)
+                .addStatement("$$groups.put($L, $L)", key.name(), collection.name());
+        CodeBlock object = this.readObject(code, mapping, "", Set.of(key.name(), collection.name()));
+        code.addStatement("$$list.add($L)", object)
+                .endControlFlow()
+                .endControlFlow();
+        // Row of outer join without matching element has all element columns null
+        String element = "$" + collection.name() + "Element";
+        if (collection.nested() == null) {
+            this.typeMapperResolver.readToVariable(code, collection.column(), element, collection.elementType());
+        } else {
+            this.readNestedObject(code, collection.nested(), elementType, element);
+        }
+        code.beginControlFlow("if ($L != null)", element)
+                .addStatement("$L.add($L)", collection.name(), element)
+                .endControlFlow();
+        code.endControlFlow().addStatement("return $$list");
         method.addCode(code.build());
         this.typeMapperResolver.getCurrentRepoBuilder().addMethod(method.build());
     }
 
-    private MethodSpec.Builder generateMethodHeadFor(String methodName, TypeMirror returnType) {
+    /**
+     * Adds column plan for mapper that finds columns by labels
+     */
+    private CodeBlock.Builder startMapperCode(String methodName, ObjectMapping mapping, boolean byLabels) {
+        CodeBlock.Builder code = CodeBlock.builder();
+        if (!byLabels)
+            return code;
+        String planField = methodName.toUpperCase(Locale.ROOT) + "_COLUMNS";
+        List<String> labels = new ArrayList<>();
+        this.collectLabels(mapping, labels);
+        this.typeMapperResolver.getCurrentRepoBuilder().addField(FieldSpec
+                .builder(ColumnPlan.class, planField, Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                .initializer("new $T($L)", ColumnPlan.class, labels.stream()
+                        .map(l -> CodeBlock.of("$S", l))
+                        .collect(CodeBlock.joining(", ")))
+                .build());
+        return code.addStatement("int[] $$columns = $L.resolve(rs)", planField);
+    }
+
+    /**
+     * Labels are in same order as resolver numbers columns, depth first
+     */
+    private void collectLabels(ObjectMapping mapping, List<String> labels) {
+        for (ObjectMapping.Parameter parameter : mapping.parameters()) {
+            if (parameter.nested() == null)
+                labels.add(parameter.label());
+            else
+                this.collectLabels(parameter.nested(), labels);
+        }
+    }
+
+    private MethodSpec.Builder generateMethodHeadFor(String methodName, TypeName returnType) {
         return MethodSpec.methodBuilder(methodName)
-                .returns(TypeName.get(returnType))
+                .returns(returnType)
                 .addException(SQLException.class)
                 .addParameter(ParameterSpec
                         .builder(ResultSet.class, "rs")
@@ -58,53 +141,65 @@ public class ComplexTypeMapperGenerator {
                 ).addModifiers(Modifier.PRIVATE);
     }
 
-    private void readParametersToVariables(List<Pair<Integer, String>> selectedItems, List<? extends VariableElement> variableElements,
-                                           TypeMirror returnType , CodeBlock.Builder code) {
-        Map<TypeMirror, TypeMirror> typeMap = ElementUtils.makeParamTypeMap(returnType);
-        for (VariableElement element : variableElements) {
-            Pair<Integer, String> item = selectedItems.stream()
-                    .filter(i -> i.right().equalsIgnoreCase(element.getSimpleName().toString()))
-                    .findFirst()
-                    .orElseThrow();
-            this.readParameterVariable(code, item.left(),
-                    element.getSimpleName().toString(),
-                    typeMap.getOrDefault(element.asType(), element.asType()));
-        }
-    }
-
-    private void readParameterVariable(CodeBlock.Builder code, int resultSetPos, String variableName, TypeMirror type) {
-        if (this.typeMapperResolver.hasTypeDefFromResultSet(type)) {
-            Pair<TypeMirror, String> mapper = this.typeMapperResolver.getTypeMapperFromResultSet(type);
-            code.addStatement("$T $L = $T.$L(rs, $L)", TypeName.get(type), variableName, TypeName.get(mapper.left()), mapper.right(), resultSetPos);
-        } else {
-            Pair<String, String> mapper = this.typeMapperResolver.getBuiltinMapperForType(type);
-            if (mapper.right() != null) {
-                code.addStatement("var $LTmp = rs.$L($L)", variableName, mapper.left(), resultSetPos)
-                        .addStatement("$T $L = $LTmp == null ? null : $LTmp.$L", TypeName.get(type), variableName, variableName, variableName, mapper.right());
+    /**
+     * Reads parameters of object to local variables, nested objects are read to variables first
+     * @param prefix prefix of variable names, empty for returned object
+     * @param declared variables that are already read
+     * @return expression that makes object from read variables
+     */
+    private CodeBlock readObject(CodeBlock.Builder code, ObjectMapping mapping, String prefix, Set<String> declared) {
+        List<String> variables = new ArrayList<>();
+        for (ObjectMapping.Parameter parameter : mapping.parameters()) {
+            String variable = prefix.isEmpty() ? parameter.name() : prefix + "_" + parameter.name();
+            if (declared.contains(variable)) {
+                // Read by caller
+            } else if (parameter.nested() == null) {
+                this.typeMapperResolver.readToVariable(code, parameter.column(), variable, parameter.type());
             } else {
-                code.addStatement("$T $L = rs.$L($L)", TypeName.get(type), variableName, mapper.left(), resultSetPos);
-                if (!type.getKind().isPrimitive() && this.typeMapperResolver.needsNullCheck(type)) {
-                    code.beginControlFlow("if (rs.wasNull())")
-                            .addStatement("$L = null", variableName)
-                            .endControlFlow();
-                }
+                this.readNestedObject(code, parameter.nested(), TypeName.get(parameter.type()), variable);
             }
+            variables.add(variable);
         }
+        String args = String.join(", ", variables);
+        if (mapping.usesConstructor())
+            return CodeBlock.of("new $T($L)", TypeName.get(mapping.type()), args);
+        return CodeBlock.of("$T.$L($L)", ClassName.get((TypeElement) mapping.creator().getEnclosingElement()),
+                mapping.creator().getSimpleName().toString(), args);
+    }
+
+    private void readNestedObject(CodeBlock.Builder code, ObjectMapping mapping, TypeName type, String variable) {
+        CodeBlock nested = this.readObject(code, mapping, variable, Set.of());
+        // Object from outer join that did not match has all columns null, primitives are read as 0,
+        // so then columns are checked in result set
+        if (mapping.parameters().stream().anyMatch(p -> p.type().getKind().isPrimitive()))
+            code.addStatement("$T $L = $L ? null : $L", type, variable, this.allColumnsNull(mapping), nested);
+        else
+            code.addStatement("$T $L = $L ? null : $L", type, variable, this.allNull(mapping, variable), nested);
+    }
+
+    private CodeBlock allColumnsNull(ObjectMapping mapping) {
+        List<CodeBlock> columns = new ArrayList<>();
+        this.collectColumns(mapping, columns);
+        return columns.stream()
+                .map(c -> CodeBlock.of("rs.getObject($L) == null", c))
+                .collect(CodeBlock.joining(" && "));
     }
 
-    private void addConstructorCallAndReturn(CodeBlock.Builder code, TypeMirror returnType, ExecutableElement constructor) {
-        String constructorArgs = constructor.getParameters()
-                .stream()
-                .map(v -> v.getSimpleName().toString())
-                .collect(Collectors.joining(", "));
-        code.addStatement("return new $T($L)", TypeName.get(returnType), constructorArgs);
+    /**
+     * Columns are in same order as labels, depth first
+     */
+    private void collectColumns(ObjectMapping mapping, List<CodeBlock> columns) {
+        for (ObjectMapping.Parameter parameter : mapping.parameters()) {
+            if (parameter.nested() == null)
+                columns.add(parameter.column());
+            else
+                this.collectColumns(parameter.nested(), columns);
+        }
     }
 
-    private void addStaticMethodCallAndReturn(CodeBlock.Builder code, TypeMirror returnType, ExecutableElement method) {
-        String methodArgs = method.getParameters()
-                .stream()
-                .map(v -> v.getSimpleName().toString())
-                .collect(Collectors.joining(", "));
-        code.addStatement("return $T.$L($L)", TypeName.get(returnType), method.getSimpleName().toString(), methodArgs);
+    private CodeBlock allNull(ObjectMapping mapping, String prefix) {
+        return mapping.parameters().stream()
+                .map(p -> CodeBlock.of("$L_$L == null", prefix, p.name()))
+                .collect(CodeBlock.joining(" && "));
     }
 }
@@ -1,40 +1,54 @@
 package me.gregorsomething.database.processor.types;
 
+import com.squareup.javapoet.CodeBlock;
 import me.gregorsomething.database.annotations.Query;
 import me.gregorsomething.database.processor.ProcessingValidationException;
 import me.gregorsomething.database.processor.RepositoryProcessor;
+import me.gregorsomething.database.processor.helpers.ElementUtils;
 import me.gregorsomething.database.processor.helpers.Pair;
 import me.gregorsomething.database.processor.paramater.ParameterProcessor;
+import me.gregorsomething.database.processor.schema.SelectColumnResolver;
 import net.sf.jsqlparser.JSQLParserException;
 import net.sf.jsqlparser.parser.CCJSqlParserUtil;
 import net.sf.jsqlparser.schema.Column;
 import net.sf.jsqlparser.statement.Statement;
 import net.sf.jsqlparser.statement.select.AllColumns;
 import net.sf.jsqlparser.statement.select.PlainSelect;
+import net.sf.jsqlparser.statement.select.Select;
 import net.sf.jsqlparser.statement.select.SelectItem;
+import org.jetbrains.annotations.Nullable;
 
-import javax.lang.model.element.Element;
 import javax.lang.model.element.ExecutableElement;
 import javax.lang.model.element.Modifier;
 import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
 import javax.lang.model.type.TypeMirror;
 import javax.lang.model.util.ElementFilter;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 public class ComplexTypeResolver {
+    // Guards against types that contain themselves
+    private static final int MAX_NESTING = 8;
 
     private final RepositoryProcessor processor;
     private final ComplexTypeMapperGenerator generator;
     private final TypeMapperResolver typeMapperResolver;
+    private final SelectColumnResolver selectColumnResolver;
 
     public ComplexTypeResolver(RepositoryProcessor processor, TypeMapperResolver typeMapperResolver) {
         this.processor = processor;
         this.typeMapperResolver = typeMapperResolver;
         this.generator = new ComplexTypeMapperGenerator(processor, typeMapperResolver);
+        this.selectColumnResolver = new SelectColumnResolver(processor.getSchemaSnapshot());
     }
 
     /**
@@ -44,11 +58,46 @@ public class ComplexTypeResolver {
      * @return method name that accepts result set
      */
     public String tryResolveType(ExecutableElement element, Query query, TypeMirror returnType) {
+        return this.tryResolveType(element, query, returnType, 0);
+    }
+
+    /**
+     * Resolves mapper for complex types, that are read from result with key columns before them
+     * @param keyColumns count of first columns that do not need to be read by mapper
+     * @return method name that accepts result set
+     */
+    public String tryResolveType(ExecutableElement element, Query query, TypeMirror returnType, int keyColumns) {
+        QueryMapping mapping = this.mappingForQuery(returnType, query.value(), element, keyColumns);
+        ObjectMapping.Parameter collection = mapping.mapping().collection();
+        if (collection != null)
+            throw new ProcessingValidationException("Auto type mapper fills '" + collection.name()
+                    + "' from rows of join, so method has to return List", element);
         String methodName = this.getMethodNameFor(element, 0);
-        this.queryToMapper(returnType, query.value(), element, methodName);
+        this.generator.generateMapperMethod(methodName, mapping.mapping(), mapping.byLabels());
         return methodName;
     }
 
+    /**
+     * Resolves mapper for complex types that collect rows of one-to-many join to list parameter,
+     * rows are grouped by first parameter that is read from column
+     * @param element method to implement
+     * @param query sqlQuery to analyze
+     * @return method name that accepts result set and reads all rows of it to list, empty if type is made of one row
+     */
+    public Optional<String> tryResolveGroupingType(ExecutableElement element, Query query, TypeMirror elementType) {
+        QueryMapping mapping = this.mappingForQuery(elementType, query.value(), element, 0);
+        if (mapping.mapping().collection() == null)
+            return Optional.empty();
+        ObjectMapping.Parameter key = mapping.mapping().parameters().stream()
+                .filter(p -> p.column() != null && p.elementType() == null)
+                .findFirst()
+                .orElseThrow(() -> new ProcessingValidationException(
+                        "Auto type mapper needs parameter read from column to group rows of join by", element));
+        String methodName = this.getMethodNameFor(element, 0);
+        this.generator.generateGroupingMapperMethod(methodName, mapping.mapping(), key, mapping.byLabels());
+        return Optional.of(methodName);
+    }
+
     private String getMethodNameFor(ExecutableElement element, int extra) {
         String methodName = element.getSimpleName().toString() + "Mapper" + (extra == 0 ? "" : extra);
         if (this.typeMapperResolver.getCurrentRepoBuilder().methodSpecs
@@ -58,61 +107,233 @@ public class ComplexTypeResolver {
             return methodName;
     }
 
-    private void queryToMapper(TypeMirror type, String query, ExecutableElement element, String methodName) {
+    private QueryMapping mappingForQuery(TypeMirror type, String query, ExecutableElement element, int keyColumns) {
         String pureQuery = ParameterProcessor.removePlaceholders(query);
-        List<Pair<Integer, String>> selectedItems = this.getSelectedItemNames(pureQuery, element);
-        Element returnType = this.processor.getTypeUtils().asElement(type);
-        if (returnType instanceof TypeElement typeElement) {
-            if (this.findSuitableStaticMethodFromClass(typeElement, type, selectedItems, methodName))
-                return; // Successfully found and generated method to mapped, can return method name
-            if (this.findSuitableConstructorFromClass(typeElement, type, selectedItems, methodName))
-                return; // Successfully found and generated method to mapped, can return method name
+        Optional<Selection> selectedItems = this.getSelectedItemNames(pureQuery, element);
+        if (!(this.processor.getTypeUtils().asElement(type) instanceof TypeElement))
+            throw new ProcessingValidationException("Auto type mapper does not recognise type kind (not TypeElement): "
+                    + type.getKind().toString(), element);
+        if (selectedItems.isEmpty()) {
+            // Columns are found from result set metadata at runtime
+            return new QueryMapping(this.mappingForUnknownColumns(type, "", new int[1], 0, element), true);
+        }
+        Map<String, CodeBlock> columns = new LinkedHashMap<>();
+        // Selected columns must match parameters, but columns expanded from wildcard may have extra ones,
+        // as they are not written by hand
+        Set<CodeBlock> required = new HashSet<>();
+        for (Pair<Integer, String> item : selectedItems.get().items()) {
+            CodeBlock position = CodeBlock.of("$L", item.left());
+            if (columns.putIfAbsent(item.right().toLowerCase(Locale.ROOT), position) == null
+                    && selectedItems.get().exact() && item.left() > keyColumns)
+                required.add(position);
+        }
+        ObjectMapping mapping = this.mappingFor(type, columns, required, 0);
+        if (mapping == null)
             throw new ProcessingValidationException("Auto type mapper failed to find suitable instantiation method", element);
+        return new QueryMapping(mapping, false);
+    }
+
+    /**
+     * Finds static method or constructor, which parameters can be read from selected columns.
+     * Parameter that can not be read from one column is nested object, read from columns
+     * prefixed with parameter name, like {@code email_name} or {@code "email.name"}.
+     * @param columns positions of columns visible for this object, by lower case name without prefix of outer objects
+     * @param required columns that must be read
+     * @return mapping, null if none of static methods or constructors match
+     */
+    private @Nullable ObjectMapping mappingFor(TypeMirror type, Map<String, CodeBlock> columns, Set<CodeBlock> required, int depth) {
+        if (depth > MAX_NESTING || !(this.processor.getTypeUtils().asElement(type) instanceof TypeElement typeElement))
+            return null;
+        List<ExecutableElement> creators = new ArrayList<>();
+        ElementFilter.methodsIn(typeElement.getEnclosedElements()).stream()
+                .filter(m -> m.getModifiers().containsAll(List.of(Modifier.PUBLIC, Modifier.STATIC)))
+                .filter(m -> this.processor.getTypeUtils().isAssignable(m.getReturnType(), typeElement.asType()))
+                .sorted(Comparator.comparingInt((ExecutableElement m) -> m.getParameters().size()).reversed())
+                .forEach(creators::add);
+        ElementFilter.constructorsIn(typeElement.getEnclosedElements()).stream()
+                .filter(c -> c.getModifiers().contains(Modifier.PUBLIC))
+                .sorted(Comparator.comparingInt((ExecutableElement c) -> c.getParameters().size()).reversed())
+                .forEach(creators::add);
+        for (ExecutableElement creator : creators) {
+            ObjectMapping mapping = this.mappingWith(type, creator, columns, depth);
+            if (mapping != null && mapping.columns().containsAll(required))
+                return mapping;
         }
-        throw new ProcessingValidationException("Auto type mapper does not recognise type kind (not TypeElement): "
-                + returnType.getKind().toString(), element);
+        return null;
     }
 
-    private boolean findSuitableConstructorFromClass(TypeElement returnType, TypeMirror returnTypeMirror, List<Pair<Integer, String>> selectedItems, String methodName) {
-        Set<String> itemNames = selectedItems.stream().map(Pair::right).map(String::toLowerCase).collect(Collectors.toSet());
-        Optional<ExecutableElement> constructor = this.hasTypeMatchingConstructor(returnType, itemNames);
-        if (constructor.isEmpty())
-            return false;
-        this.generator.generateMapperMethodForTypeWithConstructor(returnTypeMirror, selectedItems, methodName, constructor.get());
-        return true;
+    private @Nullable ObjectMapping mappingWith(TypeMirror type, ExecutableElement creator,
+                                                Map<String, CodeBlock> columns, int depth) {
+        if (creator.getParameters().isEmpty())
+            return null;
+        Map<TypeMirror, TypeMirror> typeMap = ElementUtils.makeParamTypeMap(type);
+        List<ObjectMapping.Parameter> parameters = new ArrayList<>();
+        for (VariableElement parameter : creator.getParameters()) {
+            String name = parameter.getSimpleName().toString();
+            TypeMirror parameterType = typeMap.getOrDefault(parameter.asType(), parameter.asType());
+            CodeBlock column = columns.get(name.toLowerCase(Locale.ROOT));
+            TypeMirror elementType = this.listElementOf(parameterType);
+            if (elementType != null) {
+                // Only returned object can collect rows, and only to one list
+                if (depth > 0 || parameters.stream().anyMatch(p -> p.elementType() != null))
+                    return null;
+                ObjectMapping.Parameter collection = this.collectionParameter(name, parameterType, elementType, columns, depth);
+                if (collection == null)
+                    return null;
+                parameters.add(collection);
+                continue;
+            }
+            if (column != null && this.isReadFromColumn(parameterType)) {
+                parameters.add(new ObjectMapping.Parameter(name, parameterType, column, name));
+                continue;
+            }
+            if (!this.isNestable(parameterType))
+                return null;
+            Map<String, CodeBlock> nestedColumns = this.columnsWithPrefix(columns, name.toLowerCase(Locale.ROOT));
+            ObjectMapping nested = nestedColumns.isEmpty() ? null : this.mappingFor(parameterType, nestedColumns, Set.of(), depth + 1);
+            if (nested == null)
+                return null;
+            parameters.add(new ObjectMapping.Parameter(name, parameterType, nested));
+        }
+        return new ObjectMapping(type, creator, parameters);
+    }
+
+    /**
+     * List element is read from column with parameter name or from columns prefixed with it
+     */
+    private @Nullable ObjectMapping.Parameter collectionParameter(String name, TypeMirror type, TypeMirror elementType,
+                                                                  Map<String, CodeBlock> columns, int depth) {
+        CodeBlock column = columns.get(name.toLowerCase(Locale.ROOT));
+        if (column != null && this.isReadFromColumn(elementType))
+            return new ObjectMapping.Parameter(name, type, column, name, null, elementType);
+        if (!this.isNestable(elementType))
+            return null;
+        Map<String, CodeBlock> nestedColumns = this.columnsWithPrefix(columns, name.toLowerCase(Locale.ROOT));
+        ObjectMapping nested = nestedColumns.isEmpty() ? null : this.mappingFor(elementType, nestedColumns, Set.of(), depth + 1);
+        return nested == null ? null : new ObjectMapping.Parameter(name, type, null, null, nested, elementType);
+    }
+
+    /**
+     * @return element type if type is {@link List}, else null
+     */
+    private @Nullable TypeMirror listElementOf(TypeMirror type) {
+        if (type instanceof DeclaredType declared && declared.getTypeArguments().size() == 1
+                && declared.asElement() instanceof TypeElement element
+                && element.getQualifiedName().contentEquals(List.class.getCanonicalName()))
+            return declared.getTypeArguments().getFirst();
+        return null;
     }
 
-    private boolean findSuitableStaticMethodFromClass(TypeElement returnType, TypeMirror returnTypeMirror, List<Pair<Integer, String>> selectedItems, String methodName) {
-        Set<String> itemNames = selectedItems.stream().map(Pair::right).map(String::toLowerCase).collect(Collectors.toSet());
-        Optional<ExecutableElement> method = this.hasTypeMatchingStaticMethod(returnType, itemNames);
-        if (method.isEmpty())
+    private Map<String, CodeBlock> columnsWithPrefix(Map<String, CodeBlock> columns, String prefix) {
+        Map<String, CodeBlock> result = new LinkedHashMap<>();
+        for (Map.Entry<String, CodeBlock> column : columns.entrySet()) {
+            String name = column.getKey();
+            if (name.length() > prefix.length() + 1 && name.startsWith(prefix)
+                    && (name.charAt(prefix.length()) == '_' || name.charAt(prefix.length()) == '.'))
+                result.put(name.substring(prefix.length() + 1), column.getValue());
+        }
+        return result;
+    }
+
+    /**
+     * When columns are not known, constructor with the most parameters is used, as all of them are read from result.
+     * Nested objects are read from columns labeled with parameter name and underscore as prefix.
+     * @param prefix label prefix of this object, empty for returned object
+     * @param nextColumn index of next column in column plan, shared by all nested objects
+     */
+    private ObjectMapping mappingForUnknownColumns(TypeMirror type, String prefix, int[] nextColumn, int depth,
+                                                   ExecutableElement element) {
+        if (depth > MAX_NESTING || !(this.processor.getTypeUtils().asElement(type) instanceof TypeElement typeElement))
+            throw new ProcessingValidationException("Auto type mapper can not map " + type + " from columns", element);
+        ExecutableElement constructor = this.findConstructorForUnknownColumns(typeElement, element);
+        Map<TypeMirror, TypeMirror> typeMap = ElementUtils.makeParamTypeMap(type);
+        List<ObjectMapping.Parameter> parameters = new ArrayList<>();
+        for (VariableElement parameter : constructor.getParameters()) {
+            String name = parameter.getSimpleName().toString();
+            TypeMirror parameterType = typeMap.getOrDefault(parameter.asType(), parameter.asType());
+            TypeMirror elementType = this.listElementOf(parameterType);
+            if (elementType != null) {
+                if (depth > 0 || parameters.stream().anyMatch(p -> p.elementType() != null))
+                    throw new ProcessingValidationException("Auto type mapper can only fill one list of returned object from rows of join", element);
+                if (this.isReadFromColumn(elementType))
+                    parameters.add(new ObjectMapping.Parameter(name, parameterType,
+                            CodeBlock.of("$$columns[$L]", nextColumn[0]++), prefix + name, null, elementType));
+                else
+                    parameters.add(new ObjectMapping.Parameter(name, parameterType, null, null,
+                            this.mappingForUnknownColumns(elementType, prefix + name + "_", nextColumn, depth + 1, element), elementType));
+            } else if (this.isReadFromColumn(parameterType)) {
+                parameters.add(new ObjectMapping.Parameter(name, parameterType,
+                        CodeBlock.of("$$columns[$L]", nextColumn[0]++), prefix + name));
+            } else if (this.isNestable(parameterType)) {
+                parameters.add(new ObjectMapping.Parameter(name, parameterType,
+                        this.mappingForUnknownColumns(parameterType, prefix + name + "_", nextColumn, depth + 1, element)));
+            } else {
+                throw new ProcessingValidationException("Auto type mapper can not read '" + name + "' of type " + parameterType, element);
+            }
+        }
+        return new ObjectMapping(type, constructor, parameters);
+    }
+
+    private boolean isReadFromColumn(TypeMirror type) {
+        return this.typeMapperResolver.hasTypeDefFromResultSet(type) || this.typeMapperResolver.hasBuiltinMapperForType(type);
+    }
+
+    /**
+     * Own classes and records can be nested, types of JDK are expected to come from one column
+     */
+    private boolean isNestable(TypeMirror type) {
+        if (this.isReadFromColumn(type) || !(this.processor.getTypeUtils().asElement(type) instanceof TypeElement element))
             return false;
-        this.generator.generateMapperMethodForTypeWithStaticMethod(returnTypeMirror, selectedItems, methodName, method.get());
-        return true;
+        String name = element.getQualifiedName().toString();
+        return !name.startsWith("java.") && !name.startsWith("javax.");
     }
 
-    private List<Pair<Integer, String>> getSelectedItemNames(String query, ExecutableElement element) {
+    private ExecutableElement findConstructorForUnknownColumns(TypeElement type, ExecutableElement element) {
+        List<ExecutableElement> constructors = ElementFilter.constructorsIn(type.getEnclosedElements()).stream()
+                .filter(c -> c.getModifiers().contains(Modifier.PUBLIC))
+                .filter(c -> !c.getParameters().isEmpty())
+                .sorted(Comparator.comparingInt((ExecutableElement c) -> c.getParameters().size()).reversed())
+                .toList();
+        if (constructors.isEmpty())
+            throw new ProcessingValidationException("Auto type mapper needs public constructor with parameters when selected columns are not known", element);
+        if (constructors.size() > 1 && constructors.get(0).getParameters().size() == constructors.get(1).getParameters().size())
+            throw new ProcessingValidationException("Auto type mapper can not choose constructor when selected columns are not known, select columns by name", element);
+        return constructors.getFirst();
+    }
+
+    /**
+     * @return positions and names of selected items, empty if they are not known before query is run,
+     * like with wildcard of table that is not in schema snapshot
+     */
+    private Optional<Selection> getSelectedItemNames(String query, ExecutableElement element) {
         try {
             Statement parsed = CCJSqlParserUtil.parse(query);
-            if (parsed instanceof PlainSelect select) {
+            if (parsed instanceof PlainSelect select && (select.getWithItemsList() == null || select.getWithItemsList().isEmpty())
+                    && select.getSelectItems().stream().noneMatch(i -> i.getExpression() instanceof AllColumns)) {
                 List<Pair<Integer, String>> result = new ArrayList<>();
                 int index = 1;
                 for (SelectItem<?> selectItem : select.getSelectItems()) {
                     result.add(Pair.of(index++, this.selectItemToString(selectItem, element)));
                 }
-                return result;
-            } else {
-                throw new ProcessingValidationException("Only plain selects are allowed", element);
+                return Optional.of(new Selection(result, true));
             }
+            if (!(parsed instanceof Select select))
+                return Optional.empty();
+            // Wildcards, unions and common table expressions are expanded from schema
+            return this.selectColumnResolver.columnsOf(select).map(columns -> {
+                List<Pair<Integer, String>> result = new ArrayList<>();
+                for (int i = 0; i < columns.size(); i++) {
+                    result.add(Pair.of(i + 1, columns.get(i)));
+                }
+                return new Selection(result, false);
+            });
         } catch (JSQLParserException e) {
             throw new ProcessingValidationException("Query is not valid!", element);
         }
     }
 
     private String selectItemToString(SelectItem<?> item, ExecutableElement element) {
-        if (item.getExpression() instanceof AllColumns) {
-            throw new ProcessingValidationException("Complex query does not support wildcard", element);
-        } else if (item.getAliasName() != null) {
+        if (item.getAliasName() != null) {
             return item.getAliasName().replaceAll("['\"`]", "");
         } else if (item.getExpression() instanceof Column column) {
             return column.getColumnName().replaceAll("['\"`]", "");
@@ -121,28 +342,14 @@ public class ComplexTypeResolver {
         }
     }
 
-    private Optional<ExecutableElement> hasTypeMatchingConstructor(TypeElement type, Set<String> itemNames) {
-        List<ExecutableElement> constructors = ElementFilter.constructorsIn(type.getEnclosedElements());
-        return constructors.stream()
-                .filter(c -> c.getModifiers().contains(Modifier.PUBLIC))
-                .filter(c -> {
-                    Set<String> constructorArgs = c.getParameters().stream()
-                            .map(p -> p.getSimpleName().toString().toLowerCase())
-                            .collect(Collectors.toSet());
-                    return constructorArgs.size() == itemNames.size() && constructorArgs.containsAll(itemNames);
-                }).findAny();
-    }
-
-    private Optional<ExecutableElement> hasTypeMatchingStaticMethod(TypeElement returnType, Set<String> itemNames) {
-        return ElementFilter.methodsIn(returnType.getEnclosedElements()).stream()
-                .filter(m -> m.getModifiers().containsAll(List.of(Modifier.PUBLIC, Modifier.STATIC)))
-                .filter(m -> this.processor.getTypeUtils().isAssignable(m.getReturnType(), returnType.asType()))
-                .filter(m -> {
-                    Set<String> paramArgs = m.getParameters().stream()
-                            .map(p -> p.getSimpleName().toString().toLowerCase())
-                            .collect(Collectors.toSet());
-                    return paramArgs.size() == itemNames.size() && paramArgs.containsAll(itemNames);
-                }).findAny();
+    /**
+     * @param items positions and names of selected columns
+     * @param exact if columns were written in query, not expanded from schema
+     */
+    private record Selection(List<Pair<Integer, String>> items, boolean exact) {}
 
-    }
+    /**
+     * @param byLabels if columns are found from result set metadata at runtime
+     */
+    private record QueryMapping(ObjectMapping mapping, boolean byLabels) {}
 }
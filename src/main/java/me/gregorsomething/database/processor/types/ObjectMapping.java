@@ -0,0 +1,70 @@
+package me.gregorsomething.database.processor.types;
+
+import com.squareup.javapoet.CodeBlock;
+import org.jetbrains.annotations.Nullable;
+
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.type.TypeMirror;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * How one object is made from columns of result set, nested objects are made from columns
+ * with their parameter name as prefix, so whole object graph is read by one mapper method
+ * @param type type of object, with generics resolved
+ * @param creator public constructor or static method that makes object
+ * @param parameters values for every parameter of creator, in order
+ */
+record ObjectMapping(TypeMirror type, ExecutableElement creator, List<Parameter> parameters) {
+
+    boolean usesConstructor() {
+        return this.creator.getKind() == ElementKind.CONSTRUCTOR;
+    }
+
+    /**
+     * @return parameter that collects rows of one-to-many join, null if there is none
+     */
+    @Nullable Parameter collection() {
+        return this.parameters.stream()
+                .filter(p -> p.elementType() != null)
+                .findFirst()
+                .orElse(null);
+    }
+
+    /**
+     * @return columns read for this object and its nested objects
+     */
+    Set<CodeBlock> columns() {
+        Set<CodeBlock> columns = new HashSet<>();
+        for (Parameter parameter : this.parameters) {
+            if (parameter.nested() == null)
+                columns.add(parameter.column());
+            else
+                columns.addAll(parameter.nested().columns());
+        }
+        return columns;
+    }
+
+    /**
+     * @param name parameter name
+     * @param type parameter type, with generics resolved
+     * @param column result set position of column, null if parameter is nested object
+     * @param label column name, null if parameter is nested object
+     * @param nested mapping of nested object, null if parameter is read from one column
+     * @param elementType type of list element, when parameter is list that collects element from every row of group,
+     *                    then column and nested are for one element
+     */
+    record Parameter(String name, TypeMirror type, @Nullable CodeBlock column, @Nullable String label,
+                     @Nullable ObjectMapping nested, @Nullable TypeMirror elementType) {
+
+        Parameter(String name, TypeMirror type, CodeBlock column, String label) {
+            this(name, type, column, label, null, null);
+        }
+
+        Parameter(String name, TypeMirror type, ObjectMapping nested) {
+            this(name, type, null, null, nested, null);
+        }
+    }
+}
@@ -1,19 +1,34 @@
 package me.gregorsomething.database.processor.types;
 
+import com.squareup.javapoet.ClassName;
 import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.TypeName;
 import lombok.RequiredArgsConstructor;
+import me.gregorsomething.database.Cursor;
+import me.gregorsomething.database.CursorPublisher;
+import me.gregorsomething.database.DoubleList;
+import me.gregorsomething.database.IntList;
+import me.gregorsomething.database.IntObjectMap;
+import me.gregorsomething.database.LongList;
+import me.gregorsomething.database.LongObjectMap;
 import me.gregorsomething.database.annotations.Query;
+import me.gregorsomething.database.processor.ProcessingValidationException;
 import me.gregorsomething.database.processor.RepositoryProcessor;
+import me.gregorsomething.database.processor.StatementTable;
+import me.gregorsomething.database.processor.helpers.ElementUtils;
 import me.gregorsomething.database.processor.helpers.Pair;
 import me.gregorsomething.database.processor.paramater.ParameterProcessor;
+import me.gregorsomething.database.processor.paramater.ProcessedQuery;
 
 import javax.lang.model.element.Element;
 import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.type.TypeKind;
 import javax.lang.model.type.TypeMirror;
-import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Optional;
 
@@ -23,29 +38,33 @@ public class TypeMapperCodeGenerator {
     private final TypeMapperResolver typeMapperResolver;
     private final ParameterProcessor parameterProcessor;
     private final ComplexTypeResolver complexTypeResolver;
+    private final StatementTable statementTable;
 
     public CodeBlock forResultSet(ExecutableElement element, Query query) {
-        Pair<String, String> queryParams = this.parameterProcessor.queryParametersFor(element, query.value());
+        ProcessedQuery processedQuery = this.parameterProcessor.queryParametersFor(element, query.value());
+        if (query.fetchSize() != 0 || query.maxRows() != 0 || query.queryTimeout() != 0)
+            this.processor.warning("Statement settings are not applied when ResultSet is returned", element);
         return CodeBlock.builder()
-                .addStatement("return this.database.query($S$L)", queryParams.left(), queryParams.right())
+                .addStatement("return this.database.query($S$L)", processedQuery.sql(), processedQuery.argumentList())
                 .build();
     }
 
     public CodeBlock forOptional(ExecutableElement element, Query query, TypeMirror optionalType) {
-        CodeBlock.Builder code = codeBlockStartForDatabaseQuery(element, query, false, true);
+        ProcessedQuery processedQuery = this.parameterProcessor.queryParametersFor(element, query.value());
+        CodeBlock.Builder code = codeBlockStartForDatabaseQuery(element, query, processedQuery, false, true);
         code.addStatement("rs.next()");
 
         // External mapper
         if (this.typeMapperResolver.hasTypeDefFromResultSet(optionalType)) {
             Pair<TypeMirror, String> mapper = this.typeMapperResolver.getTypeMapperFromResultSet(optionalType);
-            code.addStatement("return $T.ofNullable(T$.$L(rs, 1))", Optional.class, mapper.left(), mapper.right());
-            return endTryBlockAndAddCatchIfNeeded(element, code);
+            code.addStatement("return $T.ofNullable($T.$L(rs, 1))", Optional.class, mapper.left(), mapper.right());
+            return endQueryAndAddCatchIfNeeded(element, code);
         }
         // Complex type mapping
         if (!this.typeMapperResolver.hasBuiltinMapperForType(optionalType)) {
             String methodName = this.complexTypeResolver.tryResolveType(element, query, optionalType);
             code.addStatement("return $T.ofNullable(this.$L(rs))", Optional.class, methodName);
-            return endTryBlockAndAddCatchIfNeeded(element, code);
+            return endQueryAndAddCatchIfNeeded(element, code);
         }
 
         // Builtin mapper
@@ -67,11 +86,21 @@ public class TypeMapperCodeGenerator {
             code.addStatement("return $T.$L(tmp)", Optional.class, ofMethodName);
         }
 
-        return endTryBlockAndAddCatchIfNeeded(element, code);
+        return endQueryAndAddCatchIfNeeded(element, code);
     }
 
     public CodeBlock forList(ExecutableElement element, Query query, TypeMirror listElementType) {
-        CodeBlock.Builder code = codeBlockStartForDatabaseQuery(element, query, true, false);
+        ProcessedQuery processedQuery = this.parameterProcessor.queryParametersFor(element, query.value());
+        CodeBlock.Builder code = codeBlockStartForDatabaseQuery(element, query, processedQuery, true, false);
+        // One-to-many join, where one element is made of many rows
+        if (!this.typeMapperResolver.hasTypeDefFromResultSet(listElementType)
+                && !this.typeMapperResolver.hasBuiltinMapperForType(listElementType)) {
+            Optional<String> groupingMethod = this.complexTypeResolver.tryResolveGroupingType(element, query, listElementType);
+            if (groupingMethod.isPresent()) {
+                code.addStatement("return this.$L(rs)", groupingMethod.get());
+                return endQueryAndAddCatchIfNeeded(element, code);
+            }
+        }
         code.addStatement("$T<$T> list = new $T<>();", List.class, listElementType, ArrayList.class);
         code.beginControlFlow("while (rs.next())");
 
@@ -80,13 +109,13 @@ public class TypeMapperCodeGenerator {
             Pair<TypeMirror, String> mapper = this.typeMapperResolver.getTypeMapperFromResultSet(listElementType);
             code.addStatement("list.add($T.$L(rs, 1))", mapper.left(), mapper.right());
             code.endControlFlow().addStatement("return list");
-            return endTryBlockAndAddCatchIfNeeded(element, code);
+            return endQueryAndAddCatchIfNeeded(element, code);
         }
         if (!this.typeMapperResolver.hasBuiltinMapperForType(listElementType)) {
             String methodName = this.complexTypeResolver.tryResolveType(element, query, listElementType);
             code.addStatement("list.add(this.$L(rs))", methodName);
             code.endControlFlow().addStatement("return list");
-            return endTryBlockAndAddCatchIfNeeded(element, code);
+            return endQueryAndAddCatchIfNeeded(element, code);
         }
 
         // Builtin mapper
@@ -99,7 +128,7 @@ public class TypeMapperCodeGenerator {
                     .addStatement("list.add(rs.$L(1))", mapper.left())
                     .endControlFlow() // While
                     .addStatement("return list");
-            return endTryBlockAndAddCatchIfNeeded(element, code); // try
+            return endQueryAndAddCatchIfNeeded(element, code); // try
         }
 
         // If need null check or to avoid null pointer when dealing with calling other method
@@ -122,44 +151,119 @@ public class TypeMapperCodeGenerator {
 
         code.endControlFlow() // while
                 .addStatement("return list");
-        return endTryBlockAndAddCatchIfNeeded(element, code); //try
+        return endQueryAndAddCatchIfNeeded(element, code); //try
+    }
+
+    /**
+     * Rows are mapped lazily while cursor or stream is read
+     * @param asStream true if method returns stream, else it returns cursor
+     */
+    public CodeBlock forCursor(ExecutableElement element, Query query, TypeMirror rowType, boolean asStream) {
+        CodeBlock.Builder code = CodeBlock.builder();
+        if (this.processor.needsSqlExceptionCatch(element))
+            code.beginControlFlow("try");
+        code.addStatement("return $L$L", this.cursorCall(element, query, rowType), asStream ? ".stream()" : "");
+        return this.addCatchIfNeeded(element, code);
+    }
+
+    /**
+     * Each subscriber gets own cursor, that is opened and read on repository executor
+     */
+    public CodeBlock forPublisher(ExecutableElement element, Query query, TypeMirror rowType) {
+        return CodeBlock.builder()
+                .addStatement("return new $T<>(() -> $L, $L)", CursorPublisher.class,
+                        this.cursorCall(element, query, rowType), RepositoryProcessor.EXECUTOR)
+                .build();
+    }
+
+    private CodeBlock cursorCall(ExecutableElement element, Query query, TypeMirror rowType) {
+        ProcessedQuery processedQuery = this.parameterProcessor.queryParametersFor(element, query.value());
+        // Fetch size is set by cursor
+        CodeBlock settings = this.statementSettingsFor(element, query, false, false);
+        CodeBlock fetchSize = query.fetchSize() > 0
+                ? CodeBlock.of("$L", query.fetchSize())
+                : CodeBlock.of("$T.DEFAULT_FETCH_SIZE", Cursor.class);
+        return CodeBlock.of("this.database.cursor($L, $L, $L, $L)",
+                this.statementTable.reference(element, processedQuery, settings),
+                this.parameterProcessor.binderFor(processedQuery, settings),
+                this.rowMapperFor(element, query, rowType),
+                fetchSize);
+    }
+
+    /**
+     * Makes lambda that maps current row of result set to type
+     */
+    private CodeBlock rowMapperFor(ExecutableElement element, Query query, TypeMirror type) {
+        // External mapper
+        if (this.typeMapperResolver.hasTypeDefFromResultSet(type)) {
+            Pair<TypeMirror, String> mapper = this.typeMapperResolver.getTypeMapperFromResultSet(type);
+            return CodeBlock.of("rs -> $T.$L(rs, 1)", mapper.left(), mapper.right());
+        }
+        // Complex type mapping
+        if (!this.typeMapperResolver.hasBuiltinMapperForType(type)) {
+            String methodName = this.complexTypeResolver.tryResolveType(element, query, type);
+            return CodeBlock.of("rs -> this.$L(rs)", methodName);
+        }
+
+        // Builtin mapper
+        Pair<String, String> mapper = this.typeMapperResolver.getBuiltinMapperForType(type);
+        boolean needsNullCheck = this.typeMapperResolver.needsNullCheck(type);
+        if (!needsNullCheck && mapper.right() == null)
+            return CodeBlock.of("rs -> rs.$L(1)", mapper.left());
+
+        CodeBlock.Builder code = CodeBlock.builder().add("rs -> {\n").indent();
+        code.addStatement("var tmp = rs.$L(1)", mapper.left());
+        if (needsNullCheck) {
+            code
+                    .beginControlFlow("if (rs.wasNull())")
+                    .addStatement("return $L", query.defaultValue())
+                    .endControlFlow();
+        }
+        if (mapper.right() != null) {
+            code.addStatement("return tmp == null ? null : tmp.$L", mapper.right());
+        } else {
+            code.addStatement("return tmp");
+        }
+        return code.unindent().add("}").build();
     }
 
     public CodeBlock forType(ExecutableElement element, Query query) {
-        CodeBlock.Builder code = codeBlockStartForDatabaseQuery(element, query, false, false);
+        TypeMirror returnType = this.processor.resultTypeOf(element);
+        ProcessedQuery processedQuery = this.parameterProcessor.queryParametersFor(element, query.value());
+        CodeBlock.Builder code = codeBlockStartForDatabaseQuery(element, query, processedQuery, false, false);
         code.addStatement("rs.next()");
 
         // External mapper
-        if (this.typeMapperResolver.hasTypeDefFromResultSet(element.getReturnType())) {
-            Pair<TypeMirror, String> mapper = this.typeMapperResolver.getTypeMapperFromResultSet(element.getReturnType());
+        if (this.typeMapperResolver.hasTypeDefFromResultSet(returnType)) {
+            Pair<TypeMirror, String> mapper = this.typeMapperResolver.getTypeMapperFromResultSet(returnType);
             code.addStatement("return $T.$L(rs, 1)", mapper.left(), mapper.right());
-            return endTryBlockAndAddCatchIfNeeded(element, code);
+            return endQueryAndAddCatchIfNeeded(element, code);
 
         }
         // Complex type mapping
-        if (!this.typeMapperResolver.hasBuiltinMapperForType(element.getReturnType())) {
-            String methodName = this.complexTypeResolver.tryResolveType(element, query, element.getReturnType());
+        if (!this.typeMapperResolver.hasBuiltinMapperForType(returnType)) {
+            String methodName = this.complexTypeResolver.tryResolveType(element, query, returnType);
             code.addStatement("return this.$L(rs)", methodName);
-            return endTryBlockAndAddCatchIfNeeded(element, code);
+            return endQueryAndAddCatchIfNeeded(element, code);
         }
 
         // Builtin mapper
-        Pair<String, String> mapper = this.typeMapperResolver.getBuiltinMapperForType(element.getReturnType());
-        boolean needsNullCheck = this.typeMapperResolver.needsNullCheck(element.getReturnType());
+        Pair<String, String> mapper = this.typeMapperResolver.getBuiltinMapperForType(returnType);
+        boolean needsNullCheck = this.typeMapperResolver.needsNullCheck(returnType);
 
         // No need for null check, and null pointer cant occure here
         if (!needsNullCheck && mapper.right() == null) {
             code.addStatement("return rs.$L(1)", mapper.left());
-            return endTryBlockAndAddCatchIfNeeded(element, code);
+            return endQueryAndAddCatchIfNeeded(element, code);
         }
 
         // If need null check or to avoid null pointer when dealing with calling other method
         code.addStatement("var tmp = rs.$L(1)", mapper.left());
         if (needsNullCheck) {
-            isDefaultOkForReturnType(element.getReturnType(), query, element);
+            isDefaultOkForReturnType(returnType, query, element);
             code
                     .beginControlFlow("if (rs.wasNull())")
-                    .addStatement("return $L", query.defaultValue())
+                    .addStatement("return $L", this.defaultValueOf(returnType, query))
                     .endControlFlow();
         }
         // Additional method call to get value to needed type
@@ -168,19 +272,172 @@ public class TypeMapperCodeGenerator {
         } else {
             code.addStatement("return tmp");
         }
-        return endTryBlockAndAddCatchIfNeeded(element, code);
+        return endQueryAndAddCatchIfNeeded(element, code);
     }
 
-    private CodeBlock.Builder codeBlockStartForDatabaseQuery(ExecutableElement element, Query query, boolean isList, boolean isOptional) {
+    /**
+     * Reads first column of all rows to {@link IntList}, {@link LongList} or {@link DoubleList}, without boxing values.
+     * Null is read as 0 by driver, so it is only checked for 0 values when default value is set
+     * @param kind INT, LONG or DOUBLE
+     * @param toArray if method returns array instead of list
+     */
+    public CodeBlock forPrimitiveList(ExecutableElement element, Query query, TypeKind kind, boolean toArray) {
+        ProcessedQuery processedQuery = this.parameterProcessor.queryParametersFor(element, query.value());
+        CodeBlock.Builder code = this.codeBlockStartForQueryHandler(element, query, processedQuery, false);
+        this.insetNoRowsThrowIfNeeded(code, query);
+        Class<?> listType = switch (kind) {
+            case INT -> IntList.class;
+            case LONG -> LongList.class;
+            case DOUBLE -> DoubleList.class;
+            default -> throw new ProcessingValidationException("Primitive list can only hold int, long or double", element);
+        };
+        String getter = switch (kind) {
+            case INT -> "getInt";
+            case LONG -> "getLong";
+            default -> "getDouble";
+        };
+        int capacity = this.expectedRowsOf(query);
+        if (capacity > 0)
+            code.addStatement("$T list = new $T($L)", listType, listType, capacity);
+        else
+            code.addStatement("$T list = new $T()", listType, listType);
+        code.beginControlFlow("while (rs.next())");
+        if (query.defaultValue().equals("null")) {
+            code.addStatement("list.add(rs.$L(1))", getter);
+        } else {
+            code.addStatement("var value = rs.$L(1)", getter)
+                    .addStatement("list.add(value == 0 && rs.wasNull() ? $L : value)", query.defaultValue());
+        }
+        code.endControlFlow()
+                .addStatement(toArray ? "return list.toArray()" : "return list");
+        return endQueryAndAddCatchIfNeeded(element, code);
+    }
+
+    /**
+     * Reads first column as key and rest of columns as value, for {@code Map<K, List<V>>} rows of same key are collected.
+     * {@code Integer} and {@code Long} keys use {@link IntObjectMap} and {@link LongObjectMap}, that do not box keys.
+     * @param valueType V of map, or list of V when rows are grouped
+     */
+    public CodeBlock forMap(ExecutableElement element, Query query, TypeMirror keyType, TypeMirror valueType) {
+        if (!this.typeMapperResolver.hasTypeDefFromResultSet(keyType) && !this.typeMapperResolver.hasBuiltinMapperForType(keyType))
+            throw new ProcessingValidationException("Map key must be read from one column", element);
+        boolean grouping = this.processor.isBaseTypeOf(valueType, List.class);
+        TypeMirror rowType = grouping ? ElementUtils.getTypeParameterOf(valueType, element) : valueType;
+
+        ProcessedQuery processedQuery = this.parameterProcessor.queryParametersFor(element, query.value());
+        CodeBlock.Builder code = this.codeBlockStartForQueryHandler(element, query, processedQuery, false);
+        this.insetNoRowsThrowIfNeeded(code, query);
+        TypeName key = TypeName.get(keyType);
+        TypeName value = TypeName.get(valueType);
+        TypeName primitiveKey = key.isBoxedPrimitive() ? key.unbox() : key;
+        boolean unboxedKey = primitiveKey.equals(TypeName.INT) || primitiveKey.equals(TypeName.LONG);
+        int expectedRows = this.expectedRowsOf(query);
+        if (unboxedKey) {
+            ClassName mapType = ClassName.get(primitiveKey.equals(TypeName.INT) ? IntObjectMap.class : LongObjectMap.class);
+            code.addStatement("$T<$T> map = new $T<>($L)", mapType, value, mapType, expectedRows > 0 ? expectedRows : "");
+        } else if (expectedRows > 0) {
+            code.addStatement("$T<$T, $T> map = $T.newHashMap($L)", Map.class, key, value, HashMap.class, expectedRows);
+        } else {
+            code.addStatement("$T<$T, $T> map = new $T<>()", Map.class, key, value, HashMap.class);
+        }
+        code.beginControlFlow("while (rs.next())");
+        if (unboxedKey) {
+            // Key is not boxed, so NULL has to be checked, driver reads it as 0
+            code.addStatement("$T key = rs.$L(1)", primitiveKey, primitiveKey.equals(TypeName.INT) ? "getInt" : "getLong")
+                    .beginControlFlow("if (key == 0 && rs.wasNull())")
+                    .addStatement("throw new $T($S)", SQLException.class, "Map key can not be NULL")
+                    .endControlFlow();
+        } else {
+            this.typeMapperResolver.readToVariable(code, CodeBlock.of("1"), "key", keyType);
+        }
+        CodeBlock rowValue = this.readRowValue(code, element, query, rowType);
+        if (grouping) {
+            code.addStatement("$T group = map.get(key)", value)
+                    .beginControlFlow("if (group == null)")
+                    .addStatement("group = new $T<>()", ArrayList.class)
+                    .addStatement("map.put(key, group)")
+                    .endControlFlow()
+                    .addStatement("group.add($L)", rowValue);
+        } else {
+            code.addStatement("map.put(key, $L)", rowValue);
+        }
+        code.endControlFlow().addStatement("return map");
+        return endQueryAndAddCatchIfNeeded(element, code);
+    }
+
+    /**
+     * Reads value of map from current row, builtin and external types are read from second column
+     * @return expression of value
+     */
+    private CodeBlock readRowValue(CodeBlock.Builder code, ExecutableElement element, Query query, TypeMirror type) {
+        if (this.typeMapperResolver.hasTypeDefFromResultSet(type)) {
+            Pair<TypeMirror, String> mapper = this.typeMapperResolver.getTypeMapperFromResultSet(type);
+            return CodeBlock.of("$T.$L(rs, 2)", mapper.left(), mapper.right());
+        }
+        if (!this.typeMapperResolver.hasBuiltinMapperForType(type))
+            return CodeBlock.of("this.$L(rs)", this.complexTypeResolver.tryResolveType(element, query, type, 1));
+        this.typeMapperResolver.readToVariable(code, CodeBlock.of("2"), "value", type);
+        return CodeBlock.of("value");
+    }
+
+    /**
+     * Rows that can be read are best guess for size, as forward only result set does not tell count of rows
+     * @return expected count of rows, 0 if not known
+     */
+    private int expectedRowsOf(Query query) {
+        return query.maxRows() > 0 ? query.maxRows() : query.fetchSize();
+    }
+
+    private void insetNoRowsThrowIfNeeded(CodeBlock.Builder code, Query query) {
+        if (query.onNoResultThrow()) {
+            code.beginControlFlow("if (!rs.isBeforeFirst())")
+                    .addStatement("throw new $T()", NoSuchElementException.class)
+                    .endControlFlow();
+        }
+    }
+
+    /**
+     * Starts query call, where result set is read in handler lambda, so connection can be released after it
+     */
+    private CodeBlock.Builder codeBlockStartForDatabaseQuery(ExecutableElement element, Query query, ProcessedQuery processedQuery,
+                                                             boolean isList, boolean isOptional) {
+        CodeBlock.Builder code = this.codeBlockStartForQueryHandler(element, query, processedQuery, !isList);
+        this.insetNoRowsCheck(code, query, this.processor.resultTypeOf(element), isList, isOptional);
+        return code;
+    }
+
+    private CodeBlock.Builder codeBlockStartForQueryHandler(ExecutableElement element, Query query, ProcessedQuery processedQuery,
+                                                            boolean singleRow) {
+        CodeBlock settings = this.statementSettingsFor(element, query, singleRow, true);
         CodeBlock.Builder code = CodeBlock.builder();
-        Pair<String, String> queryParams = this.parameterProcessor.queryParametersFor(element, query.value());
-        code.beginControlFlow("try ($T rs = this.database.query($S$L))",
-                ResultSet.class, queryParams.left(), queryParams.right());
-        this.insetNoRowsCheck(code, query, isList, isOptional);
+        if (this.processor.needsSqlExceptionCatch(element))
+            code.beginControlFlow("try");
+        code.add("return this.database.query($L, $L, rs -> {\n",
+                this.statementTable.reference(element, processedQuery, settings),
+                this.parameterProcessor.binderFor(processedQuery, settings)).indent();
         return code;
     }
 
-    private void insetNoRowsCheck(CodeBlock.Builder code, Query query, boolean isList, boolean isOptional) {
+    /**
+     * Makes code that applies settings from query annotation to prepared statement {@link ParameterProcessor#STATEMENT_VARIABLE}
+     * @param singleRow if only first row is read, then driver is told to not read more by default
+     * @param withFetchSize if fetch size should be set
+     */
+    private CodeBlock statementSettingsFor(ExecutableElement element, Query query, boolean singleRow, boolean withFetchSize) {
+        if (query.fetchSize() < 0 || query.maxRows() < 0 || query.queryTimeout() < 0)
+            throw new ProcessingValidationException("Fetch size, max rows and query timeout can not be negative", element);
+        CodeBlock.Builder code = CodeBlock.builder();
+        if (withFetchSize && query.fetchSize() > 0)
+            code.addStatement("$L.setFetchSize($L)", ParameterProcessor.STATEMENT_VARIABLE, query.fetchSize());
+        int maxRows = query.maxRows() == 0 && singleRow ? 1 : query.maxRows();
+        if (maxRows > 0)
+            code.addStatement("$L.setMaxRows($L)", ParameterProcessor.STATEMENT_VARIABLE, maxRows);
+        if (query.queryTimeout() > 0)
+            code.addStatement("$L.setQueryTimeout($L)", ParameterProcessor.STATEMENT_VARIABLE, query.queryTimeout());
+        return code.build();
+    }
+
+    private void insetNoRowsCheck(CodeBlock.Builder code, Query query, TypeMirror returnType, boolean isList, boolean isOptional) {
         code.beginControlFlow("if (!rs.isBeforeFirst())");
         if (query.onNoResultThrow()) {
             code.addStatement("throw new $T()", NoSuchElementException.class);
@@ -189,18 +446,34 @@ public class TypeMapperCodeGenerator {
         } else if (isOptional) {
             code.addStatement("return $T.empty()", Optional.class);
         } else {
-            code.addStatement("return $L", query.defaultValue());
+            code.addStatement("return $L", this.defaultValueOf(returnType, query));
         }
         code.endControlFlow();
     }
 
-    private CodeBlock endTryBlockAndAddCatchIfNeeded(ExecutableElement element, CodeBlock.Builder code) {
-        if (element.getThrownTypes().isEmpty()) {
+    private CodeBlock endQueryAndAddCatchIfNeeded(ExecutableElement element, CodeBlock.Builder code) {
+        code.unindent().add("});\n");
+        return this.addCatchIfNeeded(element, code);
+    }
+
+    private CodeBlock addCatchIfNeeded(ExecutableElement element, CodeBlock.Builder code) {
+        if (this.processor.needsSqlExceptionCatch(element)) {
             code
                     .nextControlFlow("catch ($T e)", SQLException.class)
-                    .addStatement("throw new $T(e)", RuntimeException.class);
+                    .addStatement("throw new $T(e)", RuntimeException.class)
+                    .endControlFlow();
         }
-        return code.endControlFlow().build();
+        return code.build();
+    }
+
+    /**
+     * Default value as it is returned from handler lambda, primitives are cast,
+     * as lambda returns boxed value and for example -1 can not be boxed to Long
+     */
+    private CodeBlock defaultValueOf(TypeMirror type, Query query) {
+        if (type.getKind().isPrimitive())
+            return CodeBlock.of("($T) $L", TypeName.get(type), query.defaultValue());
+        return CodeBlock.of("$L", query.defaultValue());
     }
 
     private void isDefaultOkForReturnType(TypeMirror type, Query query, Element errorToThis) {
@@ -1,5 +1,7 @@
 package me.gregorsomething.database.processor.types;
 
+import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.TypeName;
 import com.squareup.javapoet.TypeSpec;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
@@ -66,6 +68,30 @@ public class TypeMapperResolver {
         return this.typesMapped.get(type);
     }
 
+    /**
+     * Adds code that reads column to new local variable, boxed types are null when column is NULL
+     * @param resultSetPos column index
+     */
+    public void readToVariable(CodeBlock.Builder code, CodeBlock resultSetPos, String variableName, TypeMirror type) {
+        if (this.hasTypeDefFromResultSet(type)) {
+            Pair<TypeMirror, String> mapper = this.getTypeMapperFromResultSet(type);
+            code.addStatement("$T $L = $T.$L(rs, $L)", TypeName.get(type), variableName, TypeName.get(mapper.left()), mapper.right(), resultSetPos);
+        } else {
+            Pair<String, String> mapper = this.getBuiltinMapperForType(type);
+            if (mapper.right() != null) {
+                code.addStatement("var $LTmp = rs.$L($L)", variableName, mapper.left(), resultSetPos)
+                        .addStatement("$T $L = $LTmp == null ? null : $LTmp.$L", TypeName.get(type), variableName, variableName, variableName, mapper.right());
+            } else {
+                code.addStatement("$T $L = rs.$L($L)", TypeName.get(type), variableName, mapper.left(), resultSetPos);
+                if (!type.getKind().isPrimitive() && this.needsNullCheck(type)) {
+                    code.beginControlFlow("if (rs.wasNull())")
+                            .addStatement("$L = null", variableName)
+                            .endControlFlow();
+                }
+            }
+        }
+    }
+
     /**
      * Checks if type need null check with rs.wasNull() (types like Long are casted to long at some point,
      * removing null, and long is not nullable, so to return def value if it was null in database,
@@ -0,0 +1,25 @@
+package me.gregorsomething.metrics;
+
+import me.gregorsomething.database.annotations.Query;
+import me.gregorsomething.database.annotations.Repository;
+import me.gregorsomething.database.annotations.Statement;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/* Only repository compiled with -Agsdb.metrics=true, others are tested without metrics */
+@Repository("CREATE TABLE IF NOT EXISTS gs_test_metrics (aaa INT PRIMARY KEY, bbb TEXT);")
+public interface MetricsRepository {
+
+    @Statement("DELETE FROM gs_test_metrics;")
+    void deleteAll();
+
+    @Statement("INSERT INTO gs_test_metrics VALUES (?, ?);")
+    void add(int id, String text);
+
+    @Query("SELECT bbb FROM gs_test_metrics")
+    List<String> getStrings();
+
+    @Query("SELECT bbb FROM gs_test_metrics WHERE aaa = ? LIMIT 1;")
+    CompletableFuture<String> getAsync(int id);
+}
@@ -0,0 +1,55 @@
+package me.gregorsomething.metrics;
+
+import me.gregorsomething.database.Database;
+import me.gregorsomething.database.DatabaseIntTest;
+import me.gregorsomething.database.DefaultRepositoryMetrics;
+import me.gregorsomething.database.MethodMetrics;
+import me.gregorsomething.database.RepositoryMetrics;
+import me.gregorsomething.database.RepositoryProvider;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MetricsRepositoryIntTest {
+
+    private static Database database;
+    private static MetricsRepository repo;
+
+    @BeforeAll
+    static void setup() {
+        database = DatabaseIntTest.makeTest();
+        repo = RepositoryProvider.create(MetricsRepository.class, database);
+        repo.deleteAll();
+        repo.add(1, "a");
+        repo.add(2, "b");
+    }
+
+    @AfterAll
+    static void teardown() {
+        repo.deleteAll();
+        database.close();
+    }
+
+    @Test
+    void testMetrics() {
+        MethodMetrics strings = metricsOf("me.gregorsomething.metrics.MetricsRepository#getStrings");
+        long calls = strings.getCalls();
+        long rows = strings.getRows();
+        assertEquals(2, repo.getStrings().size());
+        assertEquals(calls + 1, strings.getCalls());
+        assertEquals(rows + 2, strings.getRows());
+        assertTrue(strings.getLatencyMaxMicros() > 0);
+
+        MethodMetrics async = metricsOf("me.gregorsomething.metrics.MetricsRepository#getAsync");
+        long asyncCalls = async.getCalls();
+        assertEquals("a", repo.getAsync(1).join());
+        assertEquals(asyncCalls + 1, async.getCalls());
+        assertEquals(0, async.getSqlErrors());
+    }
+
+    private static MethodMetrics metricsOf(String method) {
+        return ((DefaultRepositoryMetrics) RepositoryMetrics.provider()).getMethods().get(method);
+    }
+}
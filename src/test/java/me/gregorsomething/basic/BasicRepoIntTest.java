@@ -1,12 +1,27 @@
 package me.gregorsomething.basic;
 
+import me.gregorsomething.database.Cursor;
 import me.gregorsomething.database.Database;
 import me.gregorsomething.database.DatabaseIntTest;
+import me.gregorsomething.database.PooledDatabase;
 import me.gregorsomething.database.RepositoryProvider;
+import me.gregorsomething.database.SlowQueryLog;
 import me.gregorsomething.database.Transaction;
+import me.gregorsomething.database.Transactional;
 import org.junit.jupiter.api.*;
 
+import java.sql.Connection;
 import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Flow;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -49,15 +64,17 @@ class BasicRepoIntTest {
     void testRead() {
         assertEquals("a", repo.get(1));
         assertEquals("d", repo.get(4));
+        assertEquals(Optional.of("d"), repo.getByNames("d", 4));
     }
 
     @Test
     @Order(4)
     void testTransactionSimple() {
-        assertTrue(repo.inTransaction(r ->
+        assertDoesNotThrow(() -> repo.inTransaction(r ->
                 r.add(5, "e")));
-        assertFalse(repo.inTransaction(r ->
+        Transactional.TransactionException e = assertThrows(Transactional.TransactionException.class, () -> repo.inTransaction(r ->
                 r.add(5, "a")));
+        assertInstanceOf(SQLException.class, e.getCause());
     }
 
     @Test
@@ -83,4 +100,173 @@ class BasicRepoIntTest {
             assertNull(repo.get(7));
         }
     }
+
+    @Test
+    @Order(7)
+    void testBatchWrite() {
+        int[][] counts = repo.addAll(List.of(
+                new SampleRepository.Row(10, "j"),
+                new SampleRepository.Row(11, "k"),
+                new SampleRepository.Row(12, "l")));
+        assertEquals(2, counts.length);
+        assertEquals(2, counts[0].length);
+        assertEquals(1, counts[1].length);
+        assertEquals("j", repo.get(10));
+        assertEquals("l", repo.get(12));
+    }
+
+    @Test
+    @Order(8)
+    void testStream() {
+        try (Stream<String> strings = repo.streamStrings()) {
+            assertEquals(List.of("a", "b", "c", "d", "e", "f", "j", "k", "l"), strings.toList());
+        }
+    }
+
+    @Test
+    @Order(9)
+    void testCursor() {
+        try (Cursor<Integer> ids = repo.idsFrom(11)) {
+            assertTrue(ids.hasNext());
+            assertEquals(11, ids.next());
+            assertEquals(12, ids.next());
+            assertFalse(ids.hasNext());
+        }
+    }
+
+    @Test
+    @Order(10)
+    void testMaxRows() {
+        assertEquals(List.of("a", "b"), repo.firstStrings());
+        assertEquals("a", repo.firstString());
+    }
+
+    @Test
+    @Order(11)
+    void testAsync() {
+        CompletableFuture<String> read = repo.addAsync(20, "t")
+                .thenCompose(v -> repo.getAsync(20));
+        assertEquals("t", read.join());
+        CompletionException e = assertThrows(CompletionException.class, () -> repo.addAsync(20, "t").join());
+        assertInstanceOf(SQLException.class, e.getCause());
+    }
+
+    @Test
+    @Order(12)
+    void testPublisher() {
+        CompletableFuture<List<Integer>> result = new CompletableFuture<>();
+        repo.publishIdsFrom(10).subscribe(new Flow.Subscriber<>() {
+            private final List<Integer> ids = new ArrayList<>();
+            private Flow.Subscription subscription;
+
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                this.subscription = subscription;
+                subscription.request(1);
+            }
+
+            @Override
+            public void onNext(Integer item) {
+                this.ids.add(item);
+                this.subscription.request(1);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                result.completeExceptionally(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                result.complete(this.ids);
+            }
+        });
+        assertEquals(List.of(10, 11, 12, 20), result.join());
+    }
+
+    @Test
+    @Order(13)
+    void testCacheInvalidation() throws SQLException {
+        long count = repo.countCached();
+        repo.add(30, "x");
+        assertEquals(count + 1, repo.countCached());
+        try (Transaction transaction = repo.getNewTransaction()) {
+            SampleRepository inTransaction = repo.asTransactional(transaction);
+            inTransaction.add(31, "y");
+            assertEquals(count + 2, inTransaction.countCached());
+            assertEquals(count + 1, repo.countCached());
+            transaction.commit();
+        }
+        assertEquals(count + 2, repo.countCached());
+    }
+
+    @Test
+    @Order(14)
+    void testTransactionSettings() throws SQLException {
+        try (Transaction transaction = repo.getNewTransaction(Transaction.Isolation.SERIALIZABLE, true)) {
+            Connection connection = transaction.getTransactionalDatabase().getConnection();
+            assertEquals(Connection.TRANSACTION_SERIALIZABLE, connection.getTransactionIsolation());
+            assertTrue(connection.isReadOnly());
+            SampleRepository inTransaction = repo.asTransactional(transaction);
+            assertEquals("a", inTransaction.get(1));
+            assertThrows(RuntimeException.class, () -> inTransaction.add(40, "z"));
+        }
+        // Connection is back in pool with its settings reset
+        try (Transaction transaction = repo.getNewTransaction()) {
+            Connection connection = transaction.getTransactionalDatabase().getConnection();
+            assertNotEquals(Connection.TRANSACTION_SERIALIZABLE, connection.getTransactionIsolation());
+            assertFalse(connection.isReadOnly());
+        }
+    }
+
+    @Test
+    @Order(15)
+    void testSchemaRegistry() {
+        assertTrue(database.getSchemaRegistry().isInitialized(SampleRepository.class));
+        Database other = DatabaseIntTest.makeTest();
+        try {
+            assertFalse(other.getSchemaRegistry().isInitialized(SampleRepository.class));
+            other.getSchemaRegistry().warmUpAsync(SampleRepository.class).join();
+            assertTrue(other.getSchemaRegistry().isInitialized(SampleRepository.class));
+            assertEquals("a", RepositoryProvider.create(SampleRepository.class, other).get(1));
+        } finally {
+            other.close();
+        }
+    }
+
+    @Test
+    @Order(17)
+    void testSlowQueryLog() {
+        Queue<SlowQueryLog.Entry> entries = new ConcurrentLinkedQueue<>();
+        PooledDatabase pooled = (PooledDatabase) database;
+        try (SlowQueryLog log = new SlowQueryLog(Duration.ZERO, 16, entries::add)) {
+            pooled.setSlowQueryLog(log);
+            assertEquals(Optional.of("a"), repo.getUnless(1, "b"));
+        } finally {
+            pooled.setSlowQueryLog(null);
+        }
+        // Closing log writes entries that are left in buffer
+        SlowQueryLog.Entry entry = entries.stream()
+                .filter(e -> "me.gregorsomething.basic.SampleRepository#getUnless".equals(e.origin()))
+                .findFirst().orElseThrow();
+        assertEquals(List.of("1", "<redacted>"), entry.values());
+        assertTrue(entry.totalNanos() >= entry.executeNanos() + entry.mappingNanos());
+    }
+
+    @Test
+    @Order(18)
+    void testTransactionAsync() throws SQLException {
+        try (Transaction transaction = repo.getNewTransaction()) {
+            SampleRepository first = repo.asTransactional(transaction);
+            SampleRepository second = repo.asTransactional(transaction);
+            List<CompletableFuture<Void>> writes = new ArrayList<>();
+            for (int i = 0; i < 10; i++)
+                writes.add((i % 2 == 0 ? first : second).addAsync(50 + i, "w"));
+            // Sync statements of transaction wait for async ones on same connection
+            for (int i = 0; i < 10; i++)
+                assertEquals("a", first.get(1));
+            CompletableFuture.allOf(writes.toArray(CompletableFuture[]::new)).join();
+            assertEquals("w", second.getAsync(59).join());
+        }
+    }
 }
@@ -1,12 +1,19 @@
 package me.gregorsomething.basic;
 
+import me.gregorsomething.database.Cursor;
 import me.gregorsomething.database.Transactional;
+import me.gregorsomething.database.annotations.Cached;
 import me.gregorsomething.database.annotations.Query;
+import me.gregorsomething.database.annotations.Redacted;
 import me.gregorsomething.database.annotations.Repository;
 import me.gregorsomething.database.annotations.Statement;
 
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.stream.Stream;
 
 @Repository(
         value = "CREATE TABLE IF NOT EXISTS gs_test_database1 (aaa INT PRIMARY KEY, bbb TEXT);",
@@ -20,13 +27,50 @@ public interface SampleRepository extends Transactional<SampleRepository> {
     @Statement("INSERT INTO gs_test_database1 VALUES (?, ?);")
     void add(int id, String text);
 
+    @Statement(value = "INSERT INTO gs_test_database1 VALUES ([( rows.id )], [( rows.text )]);", batchSize = 2)
+    int[][] addAll(List<Row> rows);
+
     @Query("SELECT bbb FROM gs_test_database1 WHERE aaa = ? LIMIT 1;")
     String get(int id);
 
+    @Statement("INSERT INTO gs_test_database1 VALUES (?, ?);")
+    CompletableFuture<Void> addAsync(int id, String text);
+
+    @Query("SELECT bbb FROM gs_test_database1 WHERE aaa = ? LIMIT 1;")
+    CompletableFuture<String> getAsync(int id);
+
     @Query("SELECT 1;")
     UUID get();
 
     @Query("SELECT bbb FROM gs_test_database1")
     List<String> getStrings();
 
+    @Query(value = "SELECT bbb FROM gs_test_database1 ORDER BY aaa", maxRows = 2, queryTimeout = 5)
+    List<String> firstStrings();
+
+    @Query("SELECT bbb FROM gs_test_database1 ORDER BY aaa")
+    String firstString();
+
+    @Query(value = "SELECT bbb FROM gs_test_database1 ORDER BY aaa", fetchSize = 2)
+    Stream<String> streamStrings();
+
+    @Query(value = "SELECT aaa FROM gs_test_database1 WHERE aaa >= ? ORDER BY aaa", fetchSize = 2)
+    Flow.Publisher<Integer> publishIdsFrom(int from);
+
+    @Query("SELECT aaa FROM gs_test_database1 WHERE aaa >= ? ORDER BY aaa")
+    Cursor<Integer> idsFrom(int from);
+
+    @Cached
+    @Query("SELECT COUNT(*) FROM gs_test_database1;")
+    long countCached();
+
+    @Query("SELECT bbb FROM gs_test_database1 WHERE aaa = [( id )] AND bbb <> [( hidden )];")
+    Optional<String> getUnless(int id, @Redacted String hidden);
+
+    /* Parameter names of generated binder code, compiles only if they do not clash */
+    @Query("SELECT bbb FROM gs_test_database1 WHERE aaa = [( bind1 )] AND bbb = [( ps )];")
+    Optional<String> getByNames(String ps, Integer bind1);
+
+    record Row(int id, String text) {}
+
 }
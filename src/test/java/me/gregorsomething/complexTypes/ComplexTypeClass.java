@@ -13,6 +13,14 @@ public class ComplexTypeClass {
         this.ccc = ccc;
     }
 
+    public int getAaa() {
+        return aaa;
+    }
+
+    public String getBbb() {
+        return bbb;
+    }
+
     public static ComplexTypeClass of(Integer aaa, String bbb) {
         return new ComplexTypeClass(aaa, bbb, null);
     }
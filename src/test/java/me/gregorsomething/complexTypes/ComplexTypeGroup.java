@@ -0,0 +1,7 @@
+package me.gregorsomething.complexTypes;
+
+import me.gregorsomething.database.processor.helpers.Pair;
+
+import java.util.List;
+
+public record ComplexTypeGroup(int aaa, String bbb, List<Pair<Integer, Long>> items) {}
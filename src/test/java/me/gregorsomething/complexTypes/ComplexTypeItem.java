@@ -0,0 +1,3 @@
+package me.gregorsomething.complexTypes;
+
+public record ComplexTypeItem(int id, long amount) {}
@@ -0,0 +1,5 @@
+package me.gregorsomething.complexTypes;
+
+import java.util.List;
+
+public record ComplexTypeItemGroup(int aaa, List<ComplexTypeItem> items) {}
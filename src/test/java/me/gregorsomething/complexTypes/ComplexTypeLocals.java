@@ -0,0 +1,7 @@
+package me.gregorsomething.complexTypes;
+
+import java.util.List;
+
+/* Components have names of local variables in generated mappers */
+public record ComplexTypeLocals(int aaa, String list, String groups, long lastKey, String columns,
+                                List<ComplexTypeItem> items) {}
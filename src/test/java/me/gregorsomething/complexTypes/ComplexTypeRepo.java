@@ -5,6 +5,7 @@ import me.gregorsomething.database.annotations.Repository;
 import me.gregorsomething.database.processor.helpers.Pair;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Repository("CREATE TABLE IF NOT EXISTS gs_test_database2 (aaa INT PRIMARY KEY, bbb TEXT);")
@@ -14,6 +15,12 @@ public interface ComplexTypeRepo {
     @Query(value = "SELECT bbb, aaa, 1 as ccc FROM gs_test_database2 LIMIT 1;")
     ComplexTypeClass getComplexType();
 
+    @Query(value = "SELECT * FROM gs_test_database2 t;")
+    List<ComplexTypeClass> getAllWildcard();
+
+    @Query(value = "SELECT t.* FROM gs_test_database2 t UNION ALL SELECT 1, 'a';")
+    List<ComplexTypeClass> getAllUnion();
+
     @Query(value = "SELECT 2 as bbb, 'aaa' as aaa;")
     ComplexTypeClass getComplexTypeOfMethod();
 
@@ -29,6 +36,61 @@ public interface ComplexTypeRepo {
     @Query(value = "SELECT 1 as 'left', 2 as 'right';")
     Pair<Integer, Long> getPair2();
 
+    @Query(value = """
+            SELECT * FROM (SELECT [( right )] as "right", [( left )] as "left") t;
+            """)
+    Pair<Integer, Long> getPairWildcard(int left, long right);
+
+    @Query(value = """
+            SELECT * FROM (SELECT 1 as id, [( left )] as "left") l
+            JOIN (SELECT 1 as id, [( right )] as "right") r USING (id);
+            """)
+    Pair<Integer, Long> getPairUsing(int left, long right);
+
+    @Query(value = """
+            WITH p AS (SELECT [( right )] as "right", [( left )] as "left")
+            SELECT p.* FROM p;
+            """)
+    Pair<Integer, Long> getPairWith(int left, long right);
+
+    @Query(value = """
+            SELECT [( left )] as left_left, [( right )] as left_right, 'x' as "right";
+            """)
+    Pair<Pair<Integer, Long>, String> getNestedPair(int left, long right);
+
+    @Query(value = """
+            SELECT 'x' as "right", CAST(NULL AS INT) as left_left, CAST(NULL AS BIGINT) as left_right;
+            """)
+    Pair<Pair<Integer, Long>, String> getNestedPairOfNulls();
+
+    @Query(value = """
+            SELECT 1 as aaa, 'a' as bbb, 10 as items_left, CAST(100 AS BIGINT) as items_right
+            UNION ALL SELECT 1, 'a', 11, 101
+            UNION ALL SELECT 2, 'b', NULL, NULL
+            UNION ALL SELECT 1, 'a', 12, 102;
+            """)
+    List<ComplexTypeGroup> getGroups();
+
+    @Query(value = """
+            SELECT 1 as aaa, 10 as items_id, CAST(100 AS BIGINT) as items_amount
+            UNION ALL SELECT 1, NULL, 200
+            UNION ALL SELECT 2, NULL, NULL;
+            """)
+    List<ComplexTypeItemGroup> getPrimitiveGroups();
+
+    @Query(value = """
+            SELECT * FROM (SELECT 1 as aaa, 'l' as "list", 'g' as "groups", CAST(5 AS BIGINT) as "lastKey", 'c' as "columns") p
+            JOIN (SELECT 1 as aaa, 10 as items_id, CAST(100 AS BIGINT) as items_amount
+                  UNION ALL SELECT 1, 11, 101) i USING (aaa);
+            """)
+    List<ComplexTypeLocals> getLocals();
+
+    @Query(value = """
+            SELECT 5 as id, 1 as "left", CAST(2 AS BIGINT) as "right"
+            UNION ALL SELECT 6, 3, 4;
+            """)
+    Map<Long, Pair<Integer, Long>> getPairsById();
+
     /* Autotesting method */
 
     @Query(value = """
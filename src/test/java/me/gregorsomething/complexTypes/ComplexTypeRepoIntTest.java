@@ -8,6 +8,9 @@ import me.gregorsomething.database.processor.helpers.Pair;
 import org.junit.jupiter.api.*;
 
 import java.sql.SQLException;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -59,5 +62,75 @@ class ComplexTypeRepoIntTest {
         assertNull(p3.right());
     }
 
+    @Test
+    @Order(3)
+    void testWildcardMapping() {
+        Pair<Integer, Long> pair = repo.getPairWildcard(4, 5L);
+        assertEquals(4, pair.left());
+        assertEquals(5L, pair.right());
+        // Columns of join with USING are found from result set metadata
+        assertEquals(Pair.of(6, 7L), repo.getPairUsing(6, 7L));
+        assertEquals(Pair.of(8, 9L), repo.getPairUsing(8, 9L));
+    }
+
+    @Test
+    @Order(4)
+    void testCommonTableExpressionMapping() {
+        Pair<Integer, Long> pair = repo.getPairWith(6, 7L);
+        assertEquals(6, pair.left());
+        assertEquals(7L, pair.right());
+    }
 
+    @Test
+    @Order(5)
+    void testNestedMapping() {
+        Pair<Pair<Integer, Long>, String> pair = repo.getNestedPair(8, 9L);
+        assertEquals(8, pair.left().left());
+        assertEquals(9L, pair.left().right());
+        assertEquals("x", pair.right());
+
+        Pair<Pair<Integer, Long>, String> nulls = repo.getNestedPairOfNulls();
+        assertNull(nulls.left());
+        assertEquals("x", nulls.right());
+    }
+
+    @Test
+    @Order(6)
+    void testGroupedMapping() {
+        List<ComplexTypeGroup> groups = repo.getGroups();
+        assertEquals(2, groups.size());
+        assertEquals(1, groups.get(0).aaa());
+        assertEquals(List.of(Pair.of(10, 100L), Pair.of(11, 101L), Pair.of(12, 102L)), groups.get(0).items());
+        assertEquals("b", groups.get(1).bbb());
+        assertTrue(groups.get(1).items().isEmpty());
+        List<ComplexTypeItemGroup> primitiveGroups = repo.getPrimitiveGroups();
+        // Element with NULL first column is still element, only all NULL columns mean no match
+        assertEquals(List.of(new ComplexTypeItem(10, 100L), new ComplexTypeItem(0, 200L)), primitiveGroups.get(0).items());
+        assertTrue(primitiveGroups.get(1).items().isEmpty());
+        assertEquals(List.of(new ComplexTypeLocals(1, "l", "g", 5L, "c",
+                List.of(new ComplexTypeItem(10, 100L), new ComplexTypeItem(11, 101L)))), repo.getLocals());
+    }
+
+    @Test
+    @Order(7)
+    void testMapMapping() {
+        Map<Long, Pair<Integer, Long>> pairs = repo.getPairsById();
+        assertEquals(Map.of(5L, Pair.of(1, 2L), 6L, Pair.of(3, 4L)), pairs);
+    }
+
+    @Test
+    @Order(8)
+    void testTableWildcardMapping() throws SQLException {
+        database.execute("DELETE FROM gs_test_database2;");
+        database.execute("INSERT INTO gs_test_database2 VALUES (2, 'b'), (3, 'c');");
+        assertEquals(List.of(Pair.of(2, "b"), Pair.of(3, "c")), toPairs(repo.getAllWildcard()));
+        assertEquals(List.of(Pair.of(1, "a"), Pair.of(2, "b"), Pair.of(3, "c")), toPairs(repo.getAllUnion()));
+    }
+
+    private static List<Pair<Integer, String>> toPairs(List<ComplexTypeClass> values) {
+        return values.stream()
+                .sorted(Comparator.comparingInt(ComplexTypeClass::getAaa))
+                .map(v -> Pair.of(v.getAaa(), v.getBbb()))
+                .toList();
+    }
 }
@@ -82,4 +82,16 @@ public class DatabaseIntTest {
                 rs -> rs.getInt(1), "fff");
         assertEquals(0, list1.size());
     }
+
+    @Test
+    @Order(5)
+    void testReadWithHandler() throws SQLException {
+        int count = database.query("SELECT aaa FROM gs_test_database WHERE aaa >= ?;", rs -> {
+            int rows = 0;
+            while (rs.next())
+                rows++;
+            return rows;
+        }, 2);
+        assertEquals(2, count);
+    }
 }
@@ -0,0 +1,111 @@
+package me.gregorsomething.database;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.postgresql.ds.PGSimpleDataSource;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PooledDatabaseIntTest {
+
+    private static ConnectionPool pool;
+
+    @BeforeAll
+    static void setup() {
+        PGSimpleDataSource dataSource = new PGSimpleDataSource();
+        dataSource.setUrl("jdbc:postgresql://127.0.0.1/test?user=postgres&password=postgres");
+        pool = new ConnectionPool(dataSource, 2, Duration.ofMillis(200), Duration.ofMinutes(1));
+    }
+
+    @AfterAll
+    static void teardown() {
+        pool.close();
+    }
+
+    @Test
+    void testConnectionReused() throws SQLException {
+        Connection physical;
+        try (Connection connection = pool.getConnection()) {
+            physical = connection.unwrap(Connection.class);
+        }
+        try (Connection connection = pool.getConnection()) {
+            assertSame(physical, connection.unwrap(Connection.class));
+        }
+    }
+
+    @Test
+    void testPoolIsBounded() throws SQLException {
+        try (Connection ignored = pool.getConnection();
+             Connection ignored1 = pool.getConnection()) {
+            assertThrows(SQLTimeoutException.class, pool::getConnection);
+        }
+        assertDoesNotThrow(() -> pool.getConnection().close());
+    }
+
+    @Test
+    void testAutoCommitRestored() throws SQLException {
+        try (Connection connection = pool.getConnection()) {
+            connection.setAutoCommit(false);
+        }
+        try (Connection connection = pool.getConnection()) {
+            assertTrue(connection.getAutoCommit());
+        }
+    }
+
+    @Test
+    void testSettingsRestored() throws SQLException {
+        String schema;
+        try (Connection connection = pool.getConnection()) {
+            schema = connection.getSchema();
+            connection.setReadOnly(true);
+            connection.setTransactionIsolation(Connection.TRANSACTION_SERIALIZABLE);
+            connection.setSchema("pg_catalog");
+        }
+        try (Connection connection = pool.getConnection()) {
+            assertFalse(connection.isReadOnly());
+            assertEquals(Connection.TRANSACTION_READ_COMMITTED, connection.getTransactionIsolation());
+            assertEquals(schema, connection.getSchema());
+        }
+    }
+
+    @Test
+    void testReturnedConnectionRejected() throws SQLException {
+        Connection connection = pool.getConnection();
+        connection.close();
+        assertTrue(connection.isClosed());
+        assertThrows(SQLException.class, () -> connection.prepareStatement("SELECT 1;"));
+        assertThrows(SQLException.class, connection::createStatement);
+    }
+
+    @Test
+    void testIdleEvictedWithoutBorrow() throws SQLException, InterruptedException {
+        PGSimpleDataSource dataSource = new PGSimpleDataSource();
+        dataSource.setUrl("jdbc:postgresql://127.0.0.1/test?user=postgres&password=postgres");
+        try (ConnectionPool idlePool = new ConnectionPool(dataSource, 1, Duration.ofMillis(200), Duration.ofMillis(100))) {
+            Connection physical;
+            try (Connection connection = idlePool.getConnection()) {
+                physical = connection.unwrap(Connection.class);
+            }
+            // Eviction runs at least once a second
+            Thread.sleep(2_000);
+            assertTrue(physical.isClosed());
+        }
+    }
+
+    @Test
+    void testStatementReused() throws SQLException {
+        Database database = new PooledDatabase(pool);
+        database.query("SELECT ?;", rs -> null, 1);
+        StatementCacheStats before = database.getStatementCacheStats();
+        database.query("SELECT ?;", rs -> null, 2);
+        StatementCacheStats after = database.getStatementCacheStats();
+        assertEquals(before.hits() + 1, after.hits());
+        assertEquals(before.misses(), after.misses());
+    }
+}
@@ -1,5 +1,7 @@
 package me.gregorsomething.types;
 
+import me.gregorsomething.database.DoubleList;
+import me.gregorsomething.database.annotations.Cached;
 import me.gregorsomething.database.annotations.Query;
 import me.gregorsomething.database.annotations.Repository;
 
@@ -7,6 +9,8 @@ import java.time.Instant;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Repository("CREATE TABLE IF NOT EXISTS gs_test_database2 (aaa INT PRIMARY KEY, bbb TEXT);")
@@ -44,4 +48,31 @@ public interface TypesRepository {
 
     @Query("SELECT [( val )]::datetime;")
     Instant getInstant(Instant val);
+
+    @Query("SELECT * FROM generate_series(1, [( count )]);")
+    int[] getInts(int count);
+
+    @Query(value = "SELECT v FROM (VALUES (1::bigint), (NULL), (3)) t(v);", defaultValue = "-1L")
+    long[] getLongs();
+
+    @Query("SELECT v / 2.0 FROM generate_series(1, [( count )]) v;")
+    DoubleList getHalves(int count);
+
+    @Query("SELECT * FROM (VALUES (1, 'a'), (2, 'b')) t(k, v);")
+    Map<Integer, String> getNamesById();
+
+    @Query("SELECT v, k FROM (VALUES (1, 'a'), (2, 'a'), (3, 'b')) t(k, v);")
+    Map<String, List<Integer>> getIdsByName();
+
+    @Cached
+    @Query("SELECT [( val )] || random();")
+    String getCachedString(String val);
+
+    @Cached(maxEntries = 1)
+    @Query("SELECT random() + [( id )];")
+    double getCachedRandom(int id);
+
+    @Cached
+    @Query("SELECT * FROM generate_series(1, [( count )]);")
+    int[] getCachedInts(int count);
 }
@@ -2,6 +2,7 @@ package me.gregorsomething.types;
 
 import me.gregorsomething.database.Database;
 import me.gregorsomething.database.DatabaseIntTest;
+import me.gregorsomething.database.DoubleList;
 import me.gregorsomething.database.RepositoryProvider;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
@@ -9,6 +10,8 @@ import org.junit.jupiter.api.Test;
 
 import java.sql.SQLException;
 import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -59,4 +62,32 @@ class TypesRepositoryIntTest {
         assertNull(repo.getLocalDate(null));
         assertEquals(LocalDate.of(2025, 3, 1), repo.getLocalDate(LocalDate.of(2025, 3, 1)));
     }
+
+    @Test
+    void testPrimitiveLists() {
+        assertArrayEquals(new int[] {1, 2, 3}, repo.getInts(3));
+        assertArrayEquals(new int[0], repo.getInts(0));
+        assertArrayEquals(new long[] {1, -1, 3}, repo.getLongs());
+        DoubleList halves = repo.getHalves(3);
+        assertEquals(3, halves.size());
+        assertEquals(1.5, halves.get(2));
+    }
+
+    @Test
+    void testMaps() {
+        assertEquals(Map.of(1, "a", 2, "b"), repo.getNamesById());
+        assertEquals(Map.of("a", List.of(1, 2), "b", List.of(3)), repo.getIdsByName());
+    }
+
+    @Test
+    void testCached() {
+        assertEquals(repo.getCachedString("a"), repo.getCachedString("a"));
+        assertNotEquals(repo.getCachedString("a"), repo.getCachedString("b"));
+        double first = repo.getCachedRandom(1);
+        assertEquals(first, repo.getCachedRandom(1));
+        repo.getCachedRandom(2);
+        assertNotEquals(first, repo.getCachedRandom(1));
+        repo.getCachedInts(3)[0] = 10;
+        assertArrayEquals(new int[]{1, 2, 3}, repo.getCachedInts(3));
+    }
 }